@@ -0,0 +1,137 @@
+package com.pharmacy.benchmarks;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * In-memory H2 database (PostgreSQL mode) for benchmarking services through their public
+ * API without a Spring context. Hibernate creates the tables of the given entities; the
+ * real schema relies on PostgreSQL triggers that H2 cannot run.
+ * <p>
+ * Services get a transaction-aware shared entity manager, repositories built on it and a
+ * transaction manager, as Spring would inject them.
+ */
+public final class BenchmarkDatabase implements AutoCloseable {
+
+    private final Connection keepAlive;
+    private final SessionFactory sessionFactory;
+    private final EntityManager entityManager;
+    private final JpaTransactionManager transactionManager;
+    private final JpaRepositoryFactory repositoryFactory;
+
+    private BenchmarkDatabase(Connection keepAlive, SessionFactory sessionFactory) {
+        this.keepAlive = keepAlive;
+        this.sessionFactory = sessionFactory;
+        this.entityManager = SharedEntityManagerCreator.createSharedEntityManager(sessionFactory);
+        this.transactionManager = new JpaTransactionManager(sessionFactory);
+        this.transactionManager.setJpaDialect(new HibernateJpaDialect());
+        this.repositoryFactory = new JpaRepositoryFactory(entityManager);
+    }
+
+    public static BenchmarkDatabase create(String name, Class<?>... entities) throws SQLException {
+        String url = "jdbc:h2:mem:" + name + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE";
+        // The in-memory database lives as long as one connection stays open
+        Connection connection = DriverManager.getConnection(url, "sa", "");
+        Configuration configuration = new Configuration()
+                .setProperty("hibernate.connection.url", url)
+                .setProperty("hibernate.connection.username", "sa")
+                .setProperty("hibernate.connection.password", "")
+                .setProperty("hibernate.connection.pool_size", "4")
+                .setProperty("hibernate.hbm2ddl.auto", "create");
+        for (Class<?> entity : entities) {
+            configuration.addAnnotatedClass(entity);
+        }
+        return new BenchmarkDatabase(connection, configuration.buildSessionFactory());
+    }
+
+    /**
+     * Creates and seeds the medicines and medicine_inventory_summary columns that cart
+     * queries read with native SQL, for services that do not map those tables. Medicine i
+     * is named "Medicine i" and is out of stock when i is a multiple of ten.
+     */
+    public List<UUID> createMedicineTables(int medicines) throws SQLException {
+        try (Statement statement = keepAlive.createStatement()) {
+            statement.execute("""
+                CREATE TABLE medicines (
+                    id UUID PRIMARY KEY,
+                    name VARCHAR(255) NOT NULL,
+                    generic_name VARCHAR(255),
+                    strength VARCHAR(50),
+                    image_url VARCHAR(500)
+                )
+                """);
+            statement.execute("""
+                CREATE TABLE medicine_inventory_summary (
+                    medicine_id UUID PRIMARY KEY REFERENCES medicines(id),
+                    total_stock BIGINT NOT NULL DEFAULT 0,
+                    best_unit_price DECIMAL(10, 2),
+                    best_discount_percentage DECIMAL(5, 2)
+                )
+                """);
+        }
+
+        List<UUID> ids = new ArrayList<>(medicines);
+        try (PreparedStatement medicine = keepAlive.prepareStatement(
+                     "INSERT INTO medicines (id, name, generic_name, strength, image_url) VALUES (?, ?, ?, ?, ?)");
+             PreparedStatement summary = keepAlive.prepareStatement(
+                     "INSERT INTO medicine_inventory_summary VALUES (?, ?, ?, ?)")) {
+            for (int i = 0; i < medicines; i++) {
+                UUID id = UUID.randomUUID();
+                ids.add(id);
+                medicine.setObject(1, id);
+                medicine.setString(2, "Medicine " + i);
+                medicine.setString(3, "Generic " + (i % 500));
+                medicine.setString(4, (i % 4 + 1) * 125 + "mg");
+                medicine.setString(5, "https://images.example.com/" + i + ".png");
+                medicine.addBatch();
+
+                summary.setObject(1, id);
+                summary.setLong(2, i % 10 == 0 ? 0 : 100 + i % 900);
+                summary.setBigDecimal(3, BigDecimal.valueOf(500 + i % 5000, 2));
+                summary.setBigDecimal(4, BigDecimal.valueOf(i % 20));
+                summary.addBatch();
+            }
+            medicine.executeBatch();
+            summary.executeBatch();
+        }
+        return ids;
+    }
+
+    public EntityManager entityManager() {
+        return entityManager;
+    }
+
+    public JpaTransactionManager transactionManager() {
+        return transactionManager;
+    }
+
+    public <T> T repository(Class<T> repositoryInterface) {
+        return repositoryFactory.getRepository(repositoryInterface);
+    }
+
+    public void inTransaction(Runnable action) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> action.run());
+    }
+
+    @Override
+    public void close() throws SQLException {
+        sessionFactory.close();
+        keepAlive.close();
+    }
+}
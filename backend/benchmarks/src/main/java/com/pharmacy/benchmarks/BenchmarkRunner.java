@@ -0,0 +1,28 @@
+package com.pharmacy.benchmarks;
+
+import org.openjdk.jmh.Main;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entry point of the benchmarks jar. Runs JMH with the given arguments and, unless told
+ * otherwise, writes JSON results to a timestamped file so that runs can be compared.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        List<String> jmhArgs = new ArrayList<>(List.of(args));
+        if (!jmhArgs.contains("-rf")) {
+            jmhArgs.add("-rf");
+            jmhArgs.add("json");
+        }
+        if (!jmhArgs.contains("-rff")) {
+            jmhArgs.add("-rff");
+            jmhArgs.add("jmh-result-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+        }
+        Main.main(jmhArgs.toArray(String[]::new));
+    }
+}
@@ -0,0 +1,112 @@
+package com.pharmacy.benchmarks.cart;
+
+import com.pharmacy.benchmarks.BenchmarkDatabase;
+import com.pharmacy.cart.dto.CartDto;
+import com.pharmacy.cart.dto.CartItemDto;
+import com.pharmacy.cart.model.Cart;
+import com.pharmacy.cart.model.CartItem;
+import com.pharmacy.cart.repository.CartItemRepository;
+import com.pharmacy.cart.repository.CartRepository;
+import com.pharmacy.cart.service.CartService;
+import com.pharmacy.cart.service.StockReservationService;
+import com.pharmacy.cart.service.WriteBehindCartService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cart reads: {@link CartService#getCart} in database mode for carts of different sizes,
+ * loading the cart and its lines and describing the medicines from an in-memory database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CartServiceBenchmark {
+
+    @Param({"1", "10", "50"})
+    private int lines;
+
+    private BenchmarkDatabase database;
+    private CartService cartService;
+    private UUID patientId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.create("cart", Cart.class, CartItem.class);
+        List<UUID> medicineIds = database.createMedicineTables(2000);
+
+        // Stock holds and the write-behind store stay disabled, as they are unconfigured
+        StockReservationService reservations = new StockReservationService();
+        ReflectionTestUtils.setField(reservations, "entityManager", database.entityManager());
+        WriteBehindCartService writeBehind =
+                new WriteBehindCartService(null, database.transactionManager(), reservations, null);
+        cartService = new CartService(database.repository(CartRepository.class),
+                database.repository(CartItemRepository.class), reservations, null, writeBehind,
+                database.transactionManager());
+        ReflectionTestUtils.setField(cartService, "entityManager", database.entityManager());
+
+        patientId = UUID.randomUUID();
+        Cart cart = new Cart();
+        cart.setPatientId(patientId);
+        List<CartItem> items = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            CartItem item = new CartItem();
+            item.setCart(cart);
+            item.setMedicineId(medicineIds.get(i * 37 % medicineIds.size()));
+            item.setQuantity(1 + i % 5);
+            item.setUnitPrice(BigDecimal.valueOf(1250 + i * 10L, 2));
+            item.setDiscountPercentage(BigDecimal.valueOf(i % 15));
+            items.add(item);
+        }
+        cart.setItems(items);
+        database.inTransaction(() -> database.entityManager().persist(cart));
+
+        verify(cartService.getCart(patientId), medicineIds);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public CartDto getCart() {
+        return cartService.getCart(patientId);
+    }
+
+    // Medicine details are read in a query whose failures are logged and swallowed; without
+    // them every line renders as an unknown medicine and the timings measure the error path
+    private void verify(CartDto cart, List<UUID> medicineIds) {
+        if (cart.getItems().size() != lines) {
+            throw new IllegalStateException("Cart has " + cart.getItems().size() + " lines, expected " + lines);
+        }
+        for (CartItemDto item : cart.getItems()) {
+            int medicine = medicineIds.indexOf(item.getMedicineId());
+            if (!("Medicine " + medicine).equals(item.getMedicineName())
+                    || !item.getInStock().equals(medicine % 10 != 0)) {
+                throw new IllegalStateException("Cart line " + item.getId()
+                        + " was rendered without its medicine details: " + item.getMedicineName());
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.pharmacy.benchmarks.catalog;
+
+import com.pharmacy.benchmarks.BenchmarkDatabase;
+import com.pharmacy.catalog.dto.MedicineDto;
+import com.pharmacy.catalog.model.Medicine;
+import com.pharmacy.catalog.model.MedicineInventory;
+import com.pharmacy.catalog.model.MedicineInventorySummary;
+import com.pharmacy.catalog.repository.MedicineInventorySummaryRepository;
+import com.pharmacy.catalog.repository.MedicineRepository;
+import com.pharmacy.catalog.service.CatalogService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Catalog lookups: {@link CatalogService#getMedicinesByIds} for a page-sized batch of
+ * medicines, a tenth of them without an inventory summary, from an in-memory database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CatalogServiceBenchmark {
+
+    private static final int MEDICINES = 2000;
+    private static final int BATCH = 100;
+
+    private BenchmarkDatabase database;
+    private CatalogService catalogService;
+    private List<UUID> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.create("catalog",
+                Medicine.class, MedicineInventory.class, MedicineInventorySummary.class);
+        catalogService = new CatalogService(database.repository(MedicineRepository.class),
+                database.repository(MedicineInventorySummaryRepository.class));
+        ReflectionTestUtils.setField(catalogService, "entityManager", database.entityManager());
+
+        List<UUID> ids = new ArrayList<>(MEDICINES);
+        Medicine.Form[] forms = Medicine.Form.values();
+        database.inTransaction(() -> {
+            for (int i = 0; i < MEDICINES; i++) {
+                Medicine medicine = new Medicine();
+                medicine.setName("Medicine " + i);
+                medicine.setGenericName("Generic " + i % 20);
+                medicine.setManufacturer("Manufacturer " + i % 7);
+                medicine.setStrength((i % 4 + 1) * 125 + "mg");
+                medicine.setForm(forms[i % forms.length]);
+                medicine.setSchedule(Medicine.Schedule.NONE);
+                medicine.setDescription("Synthetic medicine used for benchmarking");
+                database.entityManager().persist(medicine);
+                ids.add(medicine.getId());
+
+                if (i % 10 != 0) {
+                    MedicineInventorySummary summary = new MedicineInventorySummary();
+                    summary.setMedicineId(medicine.getId());
+                    summary.setTotalStock(100L + i);
+                    summary.setMinPrice(BigDecimal.valueOf(1000 + i, 2));
+                    summary.setMinMrp(BigDecimal.valueOf(1200 + i, 2));
+                    summary.setMaxDiscount(BigDecimal.valueOf(i % 20));
+                    database.entityManager().persist(summary);
+                }
+            }
+        });
+
+        // Every seventh medicine, so the batch is spread over the table
+        batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            batch.add(ids.get(i * 7 % MEDICINES));
+        }
+        verify(catalogService.getMedicinesByIds(batch), ids);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public List<MedicineDto> getMedicinesByIds() {
+        return catalogService.getMedicinesByIds(batch);
+    }
+
+    private void verify(List<MedicineDto> medicines, List<UUID> ids) {
+        if (medicines.size() != BATCH) {
+            throw new IllegalStateException("Found " + medicines.size() + " medicines, expected " + BATCH);
+        }
+        for (MedicineDto medicine : medicines) {
+            int i = ids.indexOf(medicine.getId());
+            if (!("Medicine " + i).equals(medicine.getName()) || medicine.getInStock() != (i % 10 != 0)) {
+                throw new IllegalStateException("Medicine " + medicine.getId() + " was read without its details");
+            }
+        }
+    }
+}
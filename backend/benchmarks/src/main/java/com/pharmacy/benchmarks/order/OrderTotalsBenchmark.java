@@ -0,0 +1,68 @@
+package com.pharmacy.benchmarks.order;
+
+import com.pharmacy.common.money.PriceTotals;
+import com.pharmacy.order.service.OrderService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checkout pricing as done by {@link OrderService#createOrderFromCart}: every cart line is
+ * priced once and its total split over the stock batches it was allocated from.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderTotalsBenchmark {
+
+    @Param({"1", "10", "50"})
+    private int lines;
+
+    private List<BigDecimal> unitPrices;
+    private List<BigDecimal> discounts;
+    // Quantity taken from each batch, one to three batches per line
+    private List<int[]> batchQuantities;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        unitPrices = new ArrayList<>(lines);
+        discounts = new ArrayList<>(lines);
+        batchQuantities = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            unitPrices.add(BigDecimal.valueOf(1999 + i * 25L, 2));
+            discounts.add(BigDecimal.valueOf(i % 3 == 0 ? 0 : 5 + i % 10, 0).setScale(2));
+            int[] batches = new int[1 + i % 3];
+            for (int b = 0; b < batches.length; b++) {
+                batches[b] = 1 + (i + b) % 5;
+            }
+            batchQuantities.add(batches);
+        }
+    }
+
+    @Benchmark
+    public PriceTotals priceOrder(Blackhole blackhole) {
+        PriceTotals totals = new PriceTotals();
+        for (int i = 0; i < lines; i++) {
+            blackhole.consume(totals.add(unitPrices.get(i), batchQuantities.get(i), discounts.get(i)));
+        }
+        return totals;
+    }
+}
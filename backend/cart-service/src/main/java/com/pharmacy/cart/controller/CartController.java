@@ -43,6 +43,17 @@ public class CartController {
         return ResponseEntity.ok(ApiResponse.success(cart));
     }
     
+    @PostMapping("/items/bulk")
+    public ResponseEntity<ApiResponse<CartDto>> addAllToCart(
+            @RequestHeader("X-User-Id") UUID userId,
+            @RequestBody BulkAddToCartRequest request) {
+        log.info("Bulk add to cart request for user: {}, items: {}",
+                userId, request.getItems() != null ? request.getItems().size() : 0);
+        UUID patientId = getPatientIdFromUserId(userId);
+        CartDto cart = cartService.addAllToCart(patientId, request);
+        return ResponseEntity.ok(ApiResponse.success(cart));
+    }
+    
     @PutMapping("/items/{itemId}")
     public ResponseEntity<ApiResponse<CartDto>> updateCartItem(
             @RequestHeader("X-User-Id") UUID userId,
@@ -65,6 +76,18 @@ public class CartController {
         return ResponseEntity.ok(ApiResponse.success(cart));
     }
     
+    /**
+     * Writes any cart changes still held in memory to the database; called by order-service
+     * before checkout.
+     */
+    @PostMapping("/flush")
+    public ResponseEntity<ApiResponse<Object>> flushCart(@RequestHeader("X-User-Id") UUID userId) {
+        log.info("Flush cart request for user: {}", userId);
+        UUID patientId = getPatientIdFromUserId(userId);
+        cartService.flushCart(patientId);
+        return ResponseEntity.ok(ApiResponse.success("Cart saved", null));
+    }
+    
     @DeleteMapping
     public ResponseEntity<ApiResponse<Object>> clearCart(@RequestHeader("X-User-Id") UUID userId) {
         log.info("Clear cart request for user: {}", userId);
@@ -0,0 +1,14 @@
+package com.pharmacy.cart.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkAddToCartRequest {
+    private List<AddToCartRequest> items;
+}
@@ -1,6 +1,7 @@
 package com.pharmacy.cart.model;
 
 import com.pharmacy.common.model.BaseEntity;
+import com.pharmacy.common.money.Money;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -37,13 +38,6 @@ public class CartItem extends BaseEntity {
     private BigDecimal discountPercentage = BigDecimal.ZERO;
     
     public BigDecimal getTotalPrice() {
-        BigDecimal price = unitPrice.multiply(BigDecimal.valueOf(quantity));
-        if (discountPercentage.compareTo(BigDecimal.ZERO) > 0) {
-            BigDecimal discount = price.multiply(discountPercentage).divide(BigDecimal.valueOf(100));
-            price = price.subtract(discount);
-        }
-        return price;
+        return Money.lineTotal(unitPrice, quantity, discountPercentage);
     }
 }
-
-
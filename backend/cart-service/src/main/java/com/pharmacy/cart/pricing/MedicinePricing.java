@@ -0,0 +1,8 @@
+package com.pharmacy.cart.pricing;
+
+import java.math.BigDecimal;
+
+/**
+ * Price and discount of the best in-stock, non-expired batch of a medicine.
+ */
+public record MedicinePricing(BigDecimal unitPrice, BigDecimal discountPercentage) {}
@@ -0,0 +1,89 @@
+package com.pharmacy.cart.pricing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Bounded LRU cache of medicine pricing with a per-entry TTL. Unavailable medicines are
+ * cached too (as a null pricing), so repeated lookups of sold-out items stay cheap.
+ * <p>
+ * Every invalidation bumps an epoch; a loader captures the epoch before reading the
+ * database and its result is dropped if an invalidation happened in between, so a slow
+ * load can never put back a price that was already invalidated.
+ */
+public final class PricingCache {
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<UUID, Entry> entries;
+
+    private long epoch;
+    private long evictions;
+
+    public PricingCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Entry> eldest) {
+                if (size() > PricingCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Cached entry for the medicine, or null on a miss (absent or expired).
+     */
+    public synchronized Entry get(UUID medicineId, long now) {
+        Entry entry = entries.get(medicineId);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= now) {
+            entries.remove(medicineId);
+            return null;
+        }
+        return entry;
+    }
+
+    public synchronized long epoch() {
+        return epoch;
+    }
+
+    /**
+     * Stores a loaded value unless the cache was invalidated since {@code loadEpoch}.
+     */
+    public synchronized void put(UUID medicineId, MedicinePricing pricing, long loadEpoch, long now) {
+        if (loadEpoch == epoch) {
+            entries.put(medicineId, new Entry(pricing, now + ttlMillis));
+        }
+    }
+
+    public synchronized void invalidate(UUID medicineId) {
+        epoch++;
+        entries.remove(medicineId);
+    }
+
+    public synchronized void invalidateAll() {
+        epoch++;
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    /**
+     * A cached lookup; {@code pricing} is null when the medicine has no sellable batch.
+     */
+    public record Entry(MedicinePricing pricing, long expiresAt) {}
+}
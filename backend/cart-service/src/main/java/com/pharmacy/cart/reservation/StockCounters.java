@@ -0,0 +1,109 @@
+package com.pharmacy.cart.reservation;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free per-medicine stock counters. Every medicine owns one slot holding the last
+ * reconciled stock and the quantity currently reserved by carts; reservations CAS the
+ * reserved count against the stock, so admission is constant time and contention is
+ * limited to carts competing for the same medicine. Slots live in fixed-size segments
+ * that are allocated on demand, so the table never has to be resized or locked.
+ */
+public final class StockCounters {
+
+    private static final int SEGMENT_SHIFT = 10;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int MAX_SEGMENTS = 1024;
+
+    // Each slot takes two adjacent longs: [stock, reserved]
+    private static final int STOCK = 0;
+    private static final int RESERVED = 1;
+
+    private final Map<UUID, Integer> slots = new ConcurrentHashMap<>();
+    private final AtomicInteger nextSlot = new AtomicInteger();
+    private final AtomicReferenceArray<AtomicLongArray> segments = new AtomicReferenceArray<>(MAX_SEGMENTS);
+
+    /**
+     * Slot of the medicine, or -1 if its stock has never been loaded.
+     */
+    public int slotOf(UUID medicineId) {
+        Integer slot = slots.get(medicineId);
+        return slot != null ? slot : -1;
+    }
+
+    /**
+     * Slot of the medicine. On first use a new slot is assigned and seeded with the given
+     * stock before it becomes visible, so no reservation can see it empty.
+     */
+    public int register(UUID medicineId, long initialStock) {
+        return slots.computeIfAbsent(medicineId, id -> {
+            int slot = nextSlot.getAndIncrement();
+            if (slot >= MAX_SEGMENTS * SEGMENT_SIZE) {
+                throw new IllegalStateException("Stock counter table is full");
+            }
+            setStock(slot, initialStock);
+            return slot;
+        });
+    }
+
+    /**
+     * Reserves the quantity if stock minus what is already reserved covers it.
+     */
+    public boolean tryReserve(int slot, long quantity) {
+        AtomicLongArray segment = segment(slot);
+        int base = offset(slot);
+        while (true) {
+            long reserved = segment.get(base + RESERVED);
+            if (segment.get(base + STOCK) - reserved < quantity) {
+                return false;
+            }
+            if (segment.compareAndSet(base + RESERVED, reserved, reserved + quantity)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(int slot, long quantity) {
+        segment(slot).addAndGet(offset(slot) + RESERVED, -quantity);
+    }
+
+    /**
+     * Replaces the stock with the value reconciled from the database; reservations are untouched.
+     */
+    public void setStock(int slot, long stock) {
+        segment(slot).set(offset(slot) + STOCK, stock);
+    }
+
+    public long available(int slot) {
+        AtomicLongArray segment = segment(slot);
+        int base = offset(slot);
+        return segment.get(base + STOCK) - segment.get(base + RESERVED);
+    }
+
+    public long reserved(int slot) {
+        return segment(slot).get(offset(slot) + RESERVED);
+    }
+
+    public Map<UUID, Integer> slots() {
+        return slots;
+    }
+
+    private AtomicLongArray segment(int slot) {
+        int index = slot >>> SEGMENT_SHIFT;
+        AtomicLongArray segment = segments.get(index);
+        if (segment == null) {
+            segments.compareAndSet(index, null, new AtomicLongArray(SEGMENT_SIZE * 2));
+            segment = segments.get(index);
+        }
+        return segment;
+    }
+
+    private static int offset(int slot) {
+        return (slot & (SEGMENT_SIZE - 1)) * 2;
+    }
+}
@@ -3,118 +3,202 @@ package com.pharmacy.cart.service;
 import com.pharmacy.cart.dto.*;
 import com.pharmacy.cart.model.Cart;
 import com.pharmacy.cart.model.CartItem;
+import com.pharmacy.cart.pricing.MedicinePricing;
 import com.pharmacy.cart.repository.CartItemRepository;
 import com.pharmacy.cart.repository.CartRepository;
+import com.pharmacy.common.exception.PharmacyException;
+import com.pharmacy.common.money.Money;
+import com.pharmacy.common.money.PriceTotals;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
-import lombok.RequiredArgsConstructor;
+import jakarta.persistence.Query;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
-import java.time.LocalDate;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+/**
+ * Cart operations. In database mode each operation runs in one transaction; in write-behind
+ * mode the cart is served from memory and no transaction (or connection) is held around it.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class CartService {
     
     private final CartRepository cartRepository;
     private final CartItemRepository cartItemRepository;
+    private final StockReservationService reservationService;
+    private final MedicinePricingService pricingService;
+    private final WriteBehindCartService writeBehind;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransaction;
     
     @PersistenceContext
     private EntityManager entityManager;
     
-    @Transactional(readOnly = true)
+    @Value("${cart.bulk-add.max-items:100}")
+    private int maxBulkItems;
+    
+    public CartService(CartRepository cartRepository, CartItemRepository cartItemRepository,
+                       StockReservationService reservationService, MedicinePricingService pricingService,
+                       WriteBehindCartService writeBehind, PlatformTransactionManager transactionManager) {
+        this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.reservationService = reservationService;
+        this.pricingService = pricingService;
+        this.writeBehind = writeBehind;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+    
     public CartDto getCart(UUID patientId) {
-        Cart cart = getOrCreateCart(patientId);
-        return convertToDto(cart);
+        if (writeBehind.isEnabled()) {
+            return toCartDto(writeBehind.getCart(patientId));
+        }
+        return readOnlyTransaction.execute(status -> {
+            Cart cart = getOrCreateCart(patientId);
+            reservationService.touch(cart.getId());
+            return convertToDto(cart);
+        });
     }
     
-    @Transactional
+    /**
+     * Adds to the line for the medicine, creating the cart and the line as needed. Cart,
+     * line and quantity are written by one atomic upsert, so concurrent adds of the same
+     * medicine accumulate; an existing line keeps the price it was added at.
+     */
     public CartDto addToCart(UUID patientId, AddToCartRequest request) {
-        Cart cart = getOrCreateCart(patientId);
-        
-        // Check if item already exists in cart
-        Optional<CartItem> existingItem = cartItemRepository.findByCartIdAndMedicineId(cart.getId(), request.getMedicineId());
+        int quantity = requireValidQuantity(request.getQuantity());
+        UUID medicineId = request.getMedicineId();
+        if (writeBehind.isEnabled()) {
+            return toCartDto(writeBehind.addToCart(patientId, medicineId, quantity));
+        }
         
-        if (existingItem.isPresent()) {
-            // Update quantity
-            CartItem item = existingItem.get();
-            item.setQuantity(item.getQuantity() + request.getQuantity());
-            cartItemRepository.save(item);
-        } else {
-            // Get medicine pricing from inventory
-            MedicinePricing pricing = getMedicinePricing(request.getMedicineId());
-            if (pricing == null) {
-                throw new RuntimeException("Medicine not found or not available");
-            }
-            
-            // Create new cart item
-            CartItem newItem = new CartItem();
-            newItem.setCart(cart);
-            newItem.setMedicineId(request.getMedicineId());
-            newItem.setQuantity(request.getQuantity());
-            newItem.setUnitPrice(pricing.unitPrice);
-            newItem.setDiscountPercentage(pricing.discountPercentage);
+        // Served from the pricing cache on the hot path
+        Optional<MedicinePricing> pricing = pricingService.getPricing(medicineId);
+        return transactionTemplate.execute(status -> {
+            LineChange line = pricing.isPresent()
+                    ? upsertItem(patientId, medicineId, quantity, pricing.get())
+                    : incrementItem(patientId, medicineId, quantity)
+                            .orElseThrow(() -> new PharmacyException("Medicine not found or not available",
+                                    HttpStatus.NOT_FOUND, "MEDICINE_NOT_AVAILABLE"));
             
-            cartItemRepository.save(newItem);
+            reservationService.reserve(line.cartId(), medicineId, line.quantity());
+            return loadCart(line.cartId());
+        });
+    }
+    
+    /**
+     * Adds several medicines at once (reorders, prescriptions) with one pricing lookup, one
+     * upsert for all lines and one cart read. Repeated medicines are merged. If any medicine
+     * cannot be sold or its stock cannot be held, nothing is added.
+     */
+    public CartDto addAllToCart(UUID patientId, BulkAddToCartRequest request) {
+        Map<UUID, Integer> quantities = requireValidItems(request);
+        Map<UUID, MedicinePricing> pricing = pricingService.getPricing(quantities.keySet());
+        List<UUID> unavailable = quantities.keySet().stream()
+                .filter(medicineId -> !pricing.containsKey(medicineId))
+                .toList();
+        if (!unavailable.isEmpty()) {
+            throw new PharmacyException("Medicines not found or not available: " + unavailable,
+                    HttpStatus.NOT_FOUND, "MEDICINE_NOT_AVAILABLE");
+        }
+        if (writeBehind.isEnabled()) {
+            return toCartDto(writeBehind.addAllToCart(patientId, quantities, pricing));
         }
         
-        // Refresh the cart entity to get updated items
-        entityManager.refresh(cart);
-        
-        // Reload cart with JOIN FETCH to get items
-        cart = cartRepository.findByPatientId(patientId).orElseThrow();
-        return convertToDto(cart);
+        return transactionTemplate.execute(status -> {
+            List<LineChange> lines = upsertItems(patientId, quantities, pricing);
+            for (LineChange line : lines) {
+                reservationService.reserve(line.cartId(), line.medicineId(), line.quantity());
+            }
+            return loadCart(lines.get(0).cartId());
+        });
     }
     
-    @Transactional
     public CartDto updateCartItem(UUID patientId, UUID itemId, UpdateCartItemRequest request) {
-        Cart cart = getOrCreateCart(patientId);
-        
-        CartItem item = cartItemRepository.findById(itemId)
-                .orElseThrow(() -> new RuntimeException("Cart item not found"));
-        
-        if (!item.getCart().getId().equals(cart.getId())) {
-            throw new RuntimeException("Cart item does not belong to this cart");
+        int quantity = requireValidQuantity(request.getQuantity());
+        if (writeBehind.isEnabled()) {
+            return toCartDto(writeBehind.updateCartItem(patientId, itemId, quantity));
         }
         
-        item.setQuantity(request.getQuantity());
-        cartItemRepository.save(item);
-        
-        // Refresh cart using JOIN FETCH query
-        cart = cartRepository.findByPatientId(patientId).orElseThrow();
-        return convertToDto(cart);
+        String update = """
+            UPDATE cart_items ci SET quantity = :quantity
+            FROM carts c
+            WHERE ci.id = :itemId AND ci.cart_id = c.id AND c.patient_id = :patientId
+            RETURNING ci.cart_id, ci.medicine_id, ci.quantity
+            """;
+        return transactionTemplate.execute(status -> {
+            LineChange line = singleLine(entityManager.createNativeQuery(update)
+                    .setParameter("quantity", quantity)
+                    .setParameter("itemId", itemId)
+                    .setParameter("patientId", patientId))
+                    .orElseThrow(CartService::itemNotFound);
+            
+            reservationService.reserve(line.cartId(), line.medicineId(), line.quantity());
+            return loadCart(line.cartId());
+        });
     }
     
-    @Transactional
     public CartDto removeFromCart(UUID patientId, UUID itemId) {
-        Cart cart = getOrCreateCart(patientId);
-        
-        CartItem item = cartItemRepository.findById(itemId)
-                .orElseThrow(() -> new RuntimeException("Cart item not found"));
-        
-        if (!item.getCart().getId().equals(cart.getId())) {
-            throw new RuntimeException("Cart item does not belong to this cart");
+        if (writeBehind.isEnabled()) {
+            return toCartDto(writeBehind.removeFromCart(patientId, itemId));
         }
         
-        cartItemRepository.delete(item);
-        
-        // Refresh cart using JOIN FETCH query
-        cart = cartRepository.findByPatientId(patientId).orElseThrow();
-        return convertToDto(cart);
+        String delete = """
+            DELETE FROM cart_items ci USING carts c
+            WHERE ci.id = :itemId AND ci.cart_id = c.id AND c.patient_id = :patientId
+            RETURNING ci.cart_id, ci.medicine_id, 0
+            """;
+        return transactionTemplate.execute(status -> {
+            LineChange line = singleLine(entityManager.createNativeQuery(delete)
+                    .setParameter("itemId", itemId)
+                    .setParameter("patientId", patientId))
+                    .orElseThrow(CartService::itemNotFound);
+            
+            reservationService.release(line.cartId(), line.medicineId());
+            return loadCart(line.cartId());
+        });
     }
     
-    @Transactional
     public void clearCart(UUID patientId) {
-        Cart cart = getOrCreateCart(patientId);
-        cartItemRepository.deleteByCartId(cart.getId());
+        if (writeBehind.isEnabled()) {
+            writeBehind.clearCart(patientId);
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            Cart cart = getOrCreateCart(patientId);
+            cartItemRepository.deleteByCartId(cart.getId());
+            reservationService.releaseCart(cart.getId());
+        });
+    }
+    
+    /**
+     * Makes sure the database holds the patient's current cart before checkout reads it.
+     * Only the write-behind store has anything to write; otherwise this is a no-op.
+     */
+    public void flushCart(UUID patientId) {
+        if (writeBehind.isEnabled()) {
+            writeBehind.flushAndEvict(patientId);
+        }
     }
     
     private Cart getOrCreateCart(UUID patientId) {
@@ -128,35 +212,145 @@ public class CartService {
         return cart;
     }
     
-    private MedicinePricing getMedicinePricing(UUID medicineId) {
-        LocalDate currentDate = LocalDate.now();
+    private LineChange upsertItem(UUID patientId, UUID medicineId, int quantity, MedicinePricing pricing) {
+        String upsert = """
+            WITH cart AS (
+                INSERT INTO carts (patient_id) VALUES (:patientId)
+                ON CONFLICT (patient_id) DO UPDATE SET updated_at = CURRENT_TIMESTAMP
+                RETURNING id
+            )
+            INSERT INTO cart_items (cart_id, medicine_id, quantity, unit_price, discount_percentage)
+            SELECT id, :medicineId, :quantity, :unitPrice, :discountPercentage FROM cart
+            ON CONFLICT (cart_id, medicine_id)
+            DO UPDATE SET quantity = cart_items.quantity + EXCLUDED.quantity
+            RETURNING cart_id, medicine_id, quantity
+            """;
+        return singleLine(entityManager.createNativeQuery(upsert)
+                .setParameter("patientId", patientId)
+                .setParameter("medicineId", medicineId)
+                .setParameter("quantity", quantity)
+                .setParameter("unitPrice", pricing.unitPrice())
+                .setParameter("discountPercentage", pricing.discountPercentage()))
+                .orElseThrow();
+    }
+    
+    /**
+     * Bulk form of {@link #upsertItem}: every line goes through one INSERT ... VALUES.
+     * Medicine ids must be distinct, as one statement cannot update the same line twice.
+     */
+    private List<LineChange> upsertItems(UUID patientId, Map<UUID, Integer> quantities,
+                                         Map<UUID, MedicinePricing> pricing) {
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < quantities.size(); i++) {
+            values.append(i == 0 ? "" : ", ").append("(CAST(:medicineId").append(i)
+                    .append(" AS UUID), CAST(:quantity").append(i)
+                    .append(" AS INTEGER), CAST(:unitPrice").append(i)
+                    .append(" AS NUMERIC), CAST(:discountPercentage").append(i).append(" AS NUMERIC))");
+        }
+        String upsert = """
+            WITH cart AS (
+                INSERT INTO carts (patient_id) VALUES (:patientId)
+                ON CONFLICT (patient_id) DO UPDATE SET updated_at = CURRENT_TIMESTAMP
+                RETURNING id
+            )
+            INSERT INTO cart_items (cart_id, medicine_id, quantity, unit_price, discount_percentage)
+            SELECT cart.id, v.medicine_id, v.quantity, v.unit_price, v.discount_percentage
+            FROM cart, (VALUES %s) AS v(medicine_id, quantity, unit_price, discount_percentage)
+            ON CONFLICT (cart_id, medicine_id)
+            DO UPDATE SET quantity = cart_items.quantity + EXCLUDED.quantity
+            RETURNING cart_id, medicine_id, quantity
+            """.formatted(values);
         
-        // Query medicine_inventory to get best pricing
+        Query statement = entityManager.createNativeQuery(upsert).setParameter("patientId", patientId);
+        int i = 0;
+        for (Map.Entry<UUID, Integer> item : quantities.entrySet()) {
+            MedicinePricing price = pricing.get(item.getKey());
+            statement.setParameter("medicineId" + i, item.getKey())
+                    .setParameter("quantity" + i, item.getValue())
+                    .setParameter("unitPrice" + i, price.unitPrice())
+                    .setParameter("discountPercentage" + i, price.discountPercentage());
+            i++;
+        }
+        return lines(statement);
+    }
+    
+    // A medicine that can no longer be priced can still be added to a line already in the cart
+    private Optional<LineChange> incrementItem(UUID patientId, UUID medicineId, int quantity) {
+        String update = """
+            UPDATE cart_items ci SET quantity = ci.quantity + :quantity
+            FROM carts c
+            WHERE c.patient_id = :patientId AND ci.cart_id = c.id AND ci.medicine_id = :medicineId
+            RETURNING ci.cart_id, ci.medicine_id, ci.quantity
+            """;
+        return singleLine(entityManager.createNativeQuery(update)
+                .setParameter("quantity", quantity)
+                .setParameter("patientId", patientId)
+                .setParameter("medicineId", medicineId));
+    }
+    
+    private Optional<LineChange> singleLine(Query statement) {
+        List<LineChange> lines = lines(statement);
+        return lines.isEmpty() ? Optional.empty() : Optional.of(lines.get(0));
+    }
+    
+    private List<LineChange> lines(Query statement) {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = statement.getResultList();
+        List<LineChange> lines = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            lines.add(new LineChange(toUuid(row[0]), toUuid(row[1]), ((Number) row[2]).intValue()));
+        }
+        return lines;
+    }
+    
+    /**
+     * Cart with its items and their medicine name, image and stock, in one query.
+     */
+    private CartDto loadCart(UUID cartId) {
         String query = """
-            SELECT mi.unit_price, mi.discount_percentage, mi.quantity_available
-            FROM medicine_inventory mi
-            WHERE mi.medicine_id = :medicineId
-            AND mi.expiry_date > :currentDate
-            AND mi.quantity_available > 0
-            ORDER BY mi.unit_price ASC
-            LIMIT 1
+            SELECT c.id, c.patient_id, c.created_at, c.updated_at,
+                   ci.id, ci.medicine_id, ci.quantity, ci.unit_price, ci.discount_percentage,
+                   m.name, m.image_url, COALESCE(s.total_stock, 0)
+            FROM carts c
+            LEFT JOIN cart_items ci ON ci.cart_id = c.id
+            LEFT JOIN medicines m ON m.id = ci.medicine_id
+            LEFT JOIN medicine_inventory_summary s ON s.medicine_id = ci.medicine_id
+            WHERE c.id = :cartId
+            ORDER BY ci.created_at, ci.id
             """;
         
-        try {
-            Object[] result = (Object[]) entityManager.createNativeQuery(query)
-                    .setParameter("medicineId", medicineId)
-                    .setParameter("currentDate", currentDate)
-                    .getSingleResult();
-            
-            BigDecimal unitPrice = (BigDecimal) result[0];
-            BigDecimal discountPercentage = (BigDecimal) result[1];
-            Integer quantityAvailable = ((Number) result[2]).intValue();
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = entityManager.createNativeQuery(query)
+                .setParameter("cartId", cartId)
+                .getResultList();
+        
+        List<CartItemDto> items = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            if (row[4] == null) {
+                continue; // Empty cart
+            }
+            int quantity = ((Number) row[6]).intValue();
+            BigDecimal unitPrice = (BigDecimal) row[7];
+            BigDecimal discountPercentage = row[8] != null ? (BigDecimal) row[8] : BigDecimal.ZERO;
+            MedicineInfo medicineInfo = row[9] != null
+                    ? new MedicineInfo((String) row[9], (String) row[10], ((Number) row[11]).longValue() > 0)
+                    : null;
             
-            return new MedicinePricing(unitPrice, discountPercentage, quantityAvailable > 0);
-        } catch (Exception e) {
-            log.error("Error fetching medicine pricing for medicineId: {}", medicineId, e);
-            return null;
+            items.add(CartItemDto.builder()
+                    .id(toUuid(row[4]))
+                    .medicineId(toUuid(row[5]))
+                    .medicineName(medicineInfo != null ? medicineInfo.name : "Unknown Medicine")
+                    .medicineImageUrl(medicineInfo != null ? medicineInfo.imageUrl : null)
+                    .quantity(quantity)
+                    .unitPrice(unitPrice)
+                    .discountPercentage(discountPercentage)
+                    .totalPrice(Money.lineTotal(unitPrice, quantity, discountPercentage))
+                    .inStock(medicineInfo != null ? medicineInfo.inStock : false)
+                    .build());
         }
+        
+        Object[] cart = rows.get(0);
+        return toCartDto(toUuid(cart[0]), toUuid(cart[1]), items, toLocalDateTime(cart[2]), toLocalDateTime(cart[3]));
     }
     
     private CartDto convertToDto(Cart cart) {
@@ -167,38 +361,41 @@ public class CartService {
             items = cartItemRepository.findByCartId(cart.getId());
         }
         
+        // Names, images and stock for every distinct medicine in the cart, in one query
+        Map<UUID, MedicineInfo> medicineInfo = getMedicineInfo(items);
         List<CartItemDto> itemDtos = items.stream()
-                .map(this::convertItemToDto)
+                .map(item -> convertItemToDto(item, medicineInfo.get(item.getMedicineId())))
                 .collect(Collectors.toList());
         
-        BigDecimal subtotal = itemDtos.stream()
-                .map(CartItemDto::getTotalPrice)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        BigDecimal totalDiscount = itemDtos.stream()
-                .map(item -> {
-                    BigDecimal itemTotal = item.getUnitPrice().multiply(BigDecimal.valueOf(item.getQuantity()));
-                    return itemTotal.multiply(item.getDiscountPercentage()).divide(BigDecimal.valueOf(100));
-                })
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return toCartDto(cart.getId(), cart.getPatientId(), itemDtos, cart.getCreatedAt(), cart.getUpdatedAt());
+    }
+    
+    private CartDto toCartDto(WriteBehindCartService.CartView cart) {
+        return toCartDto(cart.id(), cart.patientId(), cart.items(), cart.createdAt(), cart.updatedAt());
+    }
+    
+    private CartDto toCartDto(UUID cartId, UUID patientId, List<CartItemDto> itemDtos,
+                              LocalDateTime createdAt, LocalDateTime updatedAt) {
+        // Subtotal is before discounts; the total equals the sum of the line totals
+        PriceTotals totals = new PriceTotals();
+        for (CartItemDto item : itemDtos) {
+            totals.add(item.getUnitPrice(), item.getQuantity(), item.getDiscountPercentage());
+        }
         
         return CartDto.builder()
-                .id(cart.getId())
-                .patientId(cart.getPatientId())
+                .id(cartId)
+                .patientId(patientId)
                 .items(itemDtos)
-                .subtotal(subtotal)
-                .totalDiscount(totalDiscount)
-                .total(subtotal.subtract(totalDiscount))
+                .subtotal(totals.subtotal())
+                .totalDiscount(totals.discount())
+                .total(totals.total())
                 .itemCount(itemDtos.size())
-                .createdAt(cart.getCreatedAt())
-                .updatedAt(cart.getUpdatedAt())
+                .createdAt(createdAt)
+                .updatedAt(updatedAt)
                 .build();
     }
     
-    private CartItemDto convertItemToDto(CartItem item) {
-        // Fetch medicine name and image from medicines table
-        MedicineInfo medicineInfo = getMedicineInfo(item.getMedicineId());
-        
+    private CartItemDto convertItemToDto(CartItem item, MedicineInfo medicineInfo) {
         return CartItemDto.builder()
                 .id(item.getId())
                 .medicineId(item.getMedicineId())
@@ -212,34 +409,99 @@ public class CartService {
                 .build();
     }
     
-    private MedicineInfo getMedicineInfo(UUID medicineId) {
+    /**
+     * Medicine name, image and stock for the items, keyed by medicine id. Each distinct
+     * medicine is looked up once; unknown medicines are absent from the map.
+     */
+    private Map<UUID, MedicineInfo> getMedicineInfo(List<CartItem> items) {
+        Set<UUID> medicineIds = items.stream()
+                .map(CartItem::getMedicineId)
+                .collect(Collectors.toSet());
+        if (medicineIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        
         String query = """
-            SELECT m.name, m.image_url,
-                   COALESCE(SUM(mi.quantity_available), 0) as total_stock
+            SELECT m.id, m.name, m.image_url,
+                   COALESCE(s.total_stock, 0) as total_stock
             FROM medicines m
-            LEFT JOIN medicine_inventory mi ON m.id = mi.medicine_id
-            AND mi.expiry_date > CURRENT_DATE
-            WHERE m.id = :medicineId
-            GROUP BY m.id, m.name, m.image_url
+            LEFT JOIN medicine_inventory_summary s ON s.medicine_id = m.id
+            WHERE m.id IN (:medicineIds)
             """;
         
         try {
-            Object[] result = (Object[]) entityManager.createNativeQuery(query)
-                    .setParameter("medicineId", medicineId)
-                    .getSingleResult();
-            
-            String name = (String) result[0];
-            String imageUrl = (String) result[1];
-            Long totalStock = ((Number) result[2]).longValue();
+            @SuppressWarnings("unchecked")
+            List<Object[]> rows = entityManager.createNativeQuery(query)
+                    .setParameter("medicineIds", medicineIds)
+                    .getResultList();
             
-            return new MedicineInfo(name, imageUrl, totalStock > 0);
+            Map<UUID, MedicineInfo> info = new HashMap<>(rows.size() * 2);
+            for (Object[] row : rows) {
+                String name = (String) row[1];
+                String imageUrl = (String) row[2];
+                Long totalStock = ((Number) row[3]).longValue();
+                info.put(toUuid(row[0]), new MedicineInfo(name, imageUrl, totalStock > 0));
+            }
+            return info;
         } catch (Exception e) {
-            log.error("Error fetching medicine info for medicineId: {}", medicineId, e);
-            return null;
+            log.error("Error fetching medicine info for medicineIds: {}", medicineIds, e);
+            return Collections.emptyMap();
+        }
+    }
+    
+    private static int requireValidQuantity(Integer quantity) {
+        if (quantity == null || quantity < 1) {
+            throw new PharmacyException("Quantity must be at least 1", HttpStatus.BAD_REQUEST, "INVALID_QUANTITY");
+        }
+        return quantity;
+    }
+    
+    /**
+     * Quantities by medicine id in request order, repeated medicines summed.
+     */
+    private Map<UUID, Integer> requireValidItems(BulkAddToCartRequest request) {
+        List<AddToCartRequest> items = request.getItems();
+        if (items == null || items.isEmpty()) {
+            throw new PharmacyException("At least one item is required", HttpStatus.BAD_REQUEST, "INVALID_ITEMS");
+        }
+        if (items.size() > maxBulkItems) {
+            throw new PharmacyException("At most " + maxBulkItems + " items can be added at once",
+                    HttpStatus.BAD_REQUEST, "BATCH_TOO_LARGE");
+        }
+        Map<UUID, Integer> quantities = new LinkedHashMap<>();
+        for (AddToCartRequest item : items) {
+            if (item == null || item.getMedicineId() == null) {
+                throw new PharmacyException("Every item needs a medicine id", HttpStatus.BAD_REQUEST, "INVALID_ITEMS");
+            }
+            quantities.merge(item.getMedicineId(), requireValidQuantity(item.getQuantity()), Math::addExact);
         }
+        return quantities;
+    }
+    
+    private static PharmacyException itemNotFound() {
+        return new PharmacyException("Cart item not found", HttpStatus.NOT_FOUND, "CART_ITEM_NOT_FOUND");
+    }
+    
+    // Native queries return java.sql.Timestamp or LocalDateTime depending on the driver mapping
+    private static LocalDateTime toLocalDateTime(Object value) {
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime();
+        }
+        return (LocalDateTime) value;
+    }
+    
+    // UUID columns come back as UUID from PostgreSQL but as 16 raw bytes from drivers without a UUID type
+    private static UUID toUuid(Object value) {
+        if (value instanceof byte[] bytes) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            return new UUID(buffer.getLong(), buffer.getLong());
+        }
+        return (UUID) value;
     }
     
-    private record MedicinePricing(BigDecimal unitPrice, BigDecimal discountPercentage, boolean inStock) {}
     private record MedicineInfo(String name, String imageUrl, boolean inStock) {}
+    
+    // Cart line after a mutation (quantity 0 when it was removed)
+    private record LineChange(UUID cartId, UUID medicineId, int quantity) {}
 }
 
@@ -0,0 +1,210 @@
+package com.pharmacy.cart.service;
+
+import com.pharmacy.cart.pricing.MedicinePricing;
+import com.pharmacy.cart.pricing.PricingCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Best-batch pricing for add-to-cart, served from a {@link PricingCache}. Entries are dropped
+ * as soon as the catalog change feed reports a change to the medicine or its inventory; the
+ * TTL only bounds staleness if the feed cannot be read.
+ */
+@Service
+@Slf4j
+public class MedicinePricingService {
+
+    private static final int CHANGE_BATCH_SIZE = 1000;
+
+    private final PricingCache cache;
+    private final Counter hits;
+    private final Counter misses;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Last catalog_changes id applied to the cache; -1 until the first poll
+    private volatile long lastChangeId = -1;
+
+    public MedicinePricingService(
+            MeterRegistry meterRegistry,
+            @Value("${cart.pricing-cache.max-size:10000}") int maxSize,
+            @Value("${cart.pricing-cache.ttl-ms:60000}") long ttlMs) {
+        this.cache = new PricingCache(maxSize, ttlMs);
+
+        this.hits = Counter.builder("cart.pricing.cache.requests")
+                .tag("result", "hit")
+                .description("Pricing lookups served from the cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("cart.pricing.cache.requests")
+                .tag("result", "miss")
+                .description("Pricing lookups that went to the database")
+                .register(meterRegistry);
+        Gauge.builder("cart.pricing.cache.size", cache, PricingCache::size)
+                .description("Medicines currently in the pricing cache")
+                .register(meterRegistry);
+        FunctionCounter.builder("cart.pricing.cache.evictions", cache, PricingCache::evictions)
+                .description("Pricing entries evicted to stay within the size bound")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Pricing of the best in-stock, non-expired batch; empty if the medicine cannot be sold.
+     * Database errors propagate instead of being reported as unavailability.
+     */
+    public Optional<MedicinePricing> getPricing(UUID medicineId) {
+        long now = System.currentTimeMillis();
+        PricingCache.Entry cached = cache.get(medicineId, now);
+        if (cached != null) {
+            hits.increment();
+            return Optional.ofNullable(cached.pricing());
+        }
+
+        misses.increment();
+        long epoch = cache.epoch();
+        MedicinePricing pricing = loadPricing(medicineId);
+        cache.put(medicineId, pricing, epoch, now);
+        return Optional.ofNullable(pricing);
+    }
+
+    /**
+     * Pricing of several medicines, keyed by medicine id; medicines that cannot be sold are
+     * absent. Cache misses are loaded together in one query.
+     */
+    public Map<UUID, MedicinePricing> getPricing(Collection<UUID> medicineIds) {
+        long now = System.currentTimeMillis();
+        Map<UUID, MedicinePricing> result = new HashMap<>();
+        List<UUID> missing = new ArrayList<>();
+        for (UUID medicineId : medicineIds) {
+            PricingCache.Entry cached = cache.get(medicineId, now);
+            if (cached == null) {
+                missing.add(medicineId);
+            } else if (cached.pricing() != null) {
+                result.put(medicineId, cached.pricing());
+            }
+        }
+        hits.increment(medicineIds.size() - missing.size());
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        misses.increment(missing.size());
+        long epoch = cache.epoch();
+        Map<UUID, MedicinePricing> loaded = loadPricing(missing);
+        for (UUID medicineId : missing) {
+            MedicinePricing pricing = loaded.get(medicineId);
+            cache.put(medicineId, pricing, epoch, now);
+            if (pricing != null) {
+                result.put(medicineId, pricing);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Invalidates medicines changed since the last poll. If the feed was pruned past the
+     * last applied change (or on the first poll), the whole cache is dropped instead.
+     */
+    @Scheduled(fixedDelayString = "${cart.pricing-cache.invalidation-poll-ms:2000}")
+    public void applyCatalogChanges() {
+        try {
+            if (lastChangeId < 0) {
+                lastChangeId = ((Number) entityManager.createNativeQuery(
+                        "SELECT COALESCE(MAX(id), 0) FROM catalog_changes").getSingleResult()).longValue();
+                cache.invalidateAll();
+                return;
+            }
+
+            Number oldest = (Number) entityManager.createNativeQuery(
+                    "SELECT MIN(id) FROM catalog_changes").getSingleResult();
+            if (oldest != null && lastChangeId < oldest.longValue() - 1) {
+                log.warn("Catalog changes after {} were pruned, dropping the pricing cache", lastChangeId);
+                cache.invalidateAll();
+            }
+
+            while (true) {
+                @SuppressWarnings("unchecked")
+                List<Object[]> rows = entityManager.createNativeQuery("""
+                        SELECT id, medicine_id FROM catalog_changes
+                        WHERE id > :after
+                        ORDER BY id
+                        LIMIT :limit
+                        """)
+                        .setParameter("after", lastChangeId)
+                        .setParameter("limit", CHANGE_BATCH_SIZE)
+                        .getResultList();
+                for (Object[] row : rows) {
+                    cache.invalidate((UUID) row[1]);
+                    lastChangeId = ((Number) row[0]).longValue();
+                }
+                if (rows.size() < CHANGE_BATCH_SIZE) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error applying catalog changes to the pricing cache", e);
+        }
+    }
+
+    private MedicinePricing loadPricing(UUID medicineId) {
+        // Best in-stock batch pricing, maintained per medicine in medicine_inventory_summary
+        String query = """
+            SELECT s.best_unit_price, s.best_discount_percentage
+            FROM medicine_inventory_summary s
+            WHERE s.medicine_id = :medicineId
+            AND s.best_unit_price IS NOT NULL
+            AND s.total_stock > 0
+            """;
+
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = entityManager.createNativeQuery(query)
+                .setParameter("medicineId", medicineId)
+                .getResultList();
+        if (rows.isEmpty()) {
+            return null;
+        }
+
+        Object[] row = rows.get(0);
+        BigDecimal discount = row[1] != null ? (BigDecimal) row[1] : BigDecimal.ZERO;
+        return new MedicinePricing((BigDecimal) row[0], discount);
+    }
+
+    private Map<UUID, MedicinePricing> loadPricing(Collection<UUID> medicineIds) {
+        String query = """
+            SELECT s.medicine_id, s.best_unit_price, s.best_discount_percentage
+            FROM medicine_inventory_summary s
+            WHERE s.medicine_id IN (:medicineIds)
+            AND s.best_unit_price IS NOT NULL
+            AND s.total_stock > 0
+            """;
+
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = entityManager.createNativeQuery(query)
+                .setParameter("medicineIds", medicineIds)
+                .getResultList();
+
+        Map<UUID, MedicinePricing> pricing = new HashMap<>();
+        for (Object[] row : rows) {
+            BigDecimal discount = row[2] != null ? (BigDecimal) row[2] : BigDecimal.ZERO;
+            pricing.put((UUID) row[0], new MedicinePricing((BigDecimal) row[1], discount));
+        }
+        return pricing;
+    }
+}
@@ -0,0 +1,330 @@
+package com.pharmacy.cart.service;
+
+import com.pharmacy.cart.reservation.StockCounters;
+import com.pharmacy.common.exception.PharmacyException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds stock for cart lines so that add-to-cart cannot promise more units than exist.
+ * Availability is checked against in-memory {@link StockCounters}, so admission is constant
+ * time and never touches the database. Holds expire when a cart sees no activity for the
+ * TTL, and both stock and holds are periodically reconciled with the database, which drops
+ * holds for carts that were checked out or emptied elsewhere.
+ * <p>
+ * Counters are per instance; the authoritative check at checkout is still the conditional
+ * batch decrement in order-service.
+ */
+@Service
+@Slf4j
+public class StockReservationService {
+
+    private static final int RECONCILE_CHUNK_SIZE = 500;
+
+    private final StockCounters counters = new StockCounters();
+    private final Map<UUID, CartHold> holds = new ConcurrentHashMap<>();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${cart.reservation.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cart.reservation.ttl-ms:1800000}")
+    private long ttlMs;
+
+    @Value("${cart.reservation.reconcile-grace-ms:5000}")
+    private long reconcileGraceMs;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (enabled) {
+            reconcile();
+        }
+    }
+
+    /**
+     * Sets the quantity held for a cart line, reserving or releasing the difference.
+     * Throws 409 INSUFFICIENT_STOCK when the extra units are not available. If the
+     * surrounding transaction rolls back, the previous quantity is restored.
+     */
+    public void reserve(UUID cartId, UUID medicineId, int quantity) {
+        if (!enabled) {
+            return;
+        }
+        int previous = apply(cartId, medicineId, quantity, true);
+        if (previous != quantity) {
+            afterRollback(() -> apply(cartId, medicineId, previous, false));
+        }
+    }
+
+    public void release(UUID cartId, UUID medicineId) {
+        reserve(cartId, medicineId, 0);
+    }
+
+    /**
+     * Releases everything the cart holds once the surrounding transaction commits.
+     */
+    public void releaseCart(UUID cartId) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    releaseHold(cartId);
+                }
+            });
+        } else {
+            releaseHold(cartId);
+        }
+    }
+
+    /**
+     * Extends the cart's holds; called on any cart activity.
+     */
+    public void touch(UUID cartId) {
+        if (!enabled) {
+            return;
+        }
+        holds.computeIfPresent(cartId, (id, hold) -> {
+            hold.expiresAt = System.currentTimeMillis() + ttlMs;
+            return hold;
+        });
+    }
+
+    /**
+     * Units of the medicine not held by any cart, as of the last reconciliation.
+     */
+    public long available(UUID medicineId) {
+        int slot = counters.slotOf(medicineId);
+        return slot >= 0 ? Math.max(0, counters.available(slot)) : 0;
+    }
+
+    /**
+     * Whether the medicine has stock (held or not) as of the last reconciliation; null when
+     * reservations are disabled or the medicine is not tracked yet.
+     */
+    public Boolean inStock(UUID medicineId) {
+        int slot = enabled ? counters.slotOf(medicineId) : -1;
+        return slot >= 0 ? counters.available(slot) + counters.reserved(slot) > 0 : null;
+    }
+
+    @Scheduled(fixedDelayString = "${cart.reservation.sweep-interval-ms:60000}")
+    public void expireAbandoned() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int expired = 0;
+        for (UUID cartId : holds.keySet()) {
+            CartHold removed = holds.computeIfPresent(cartId, (id, hold) -> {
+                if (hold.expiresAt > now) {
+                    return hold;
+                }
+                hold.lines.values().forEach(line -> counters.release(line.slot, line.quantity));
+                return null;
+            });
+            if (removed == null) {
+                expired++;
+            }
+        }
+        if (expired > 0) {
+            log.debug("Released stock holds of {} abandoned carts", expired);
+        }
+    }
+
+    /**
+     * Reloads stock from medicine_inventory_summary and trims holds to the cart lines that
+     * still exist. Lines changed shortly before or after the reconciliation started are left
+     * alone, since their change may not be visible in the database yet (an open transaction,
+     * or a write-behind cart that has not been flushed).
+     */
+    @Scheduled(fixedDelayString = "${cart.reservation.reconcile-interval-ms:30000}",
+               initialDelayString = "${cart.reservation.reconcile-interval-ms:30000}")
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            reconcileStock();
+            reconcileHolds(start - reconcileGraceMs);
+            log.debug("Reconciled stock for {} medicines and {} carts in {} ms",
+                    counters.slots().size(), holds.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("Error reconciling stock reservations", e);
+        }
+    }
+
+    private void reconcileStock() {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = entityManager.createNativeQuery(
+                        "SELECT medicine_id, total_stock FROM medicine_inventory_summary")
+                .getResultList();
+
+        Set<UUID> seen = new HashSet<>(rows.size() * 2);
+        for (Object[] row : rows) {
+            UUID medicineId = (UUID) row[0];
+            long stock = ((Number) row[1]).longValue();
+            counters.setStock(counters.register(medicineId, stock), stock);
+            seen.add(medicineId);
+        }
+        // Medicines whose summary row disappeared have no stock left
+        counters.slots().forEach((medicineId, slot) -> {
+            if (!seen.contains(medicineId)) {
+                counters.setStock(slot, 0);
+            }
+        });
+    }
+
+    private void reconcileHolds(long changedSince) {
+        List<UUID> cartIds = new ArrayList<>(holds.keySet());
+        for (int from = 0; from < cartIds.size(); from += RECONCILE_CHUNK_SIZE) {
+            List<UUID> chunk = cartIds.subList(from, Math.min(from + RECONCILE_CHUNK_SIZE, cartIds.size()));
+
+            @SuppressWarnings("unchecked")
+            List<Object[]> rows = entityManager.createNativeQuery(
+                            "SELECT cart_id, medicine_id, quantity FROM cart_items WHERE cart_id IN (:cartIds)")
+                    .setParameter("cartIds", chunk)
+                    .getResultList();
+
+            Map<UUID, Map<UUID, Integer>> stored = new HashMap<>();
+            for (Object[] row : rows) {
+                stored.computeIfAbsent((UUID) row[0], id -> new HashMap<>())
+                        .put((UUID) row[1], ((Number) row[2]).intValue());
+            }
+
+            for (UUID cartId : chunk) {
+                Map<UUID, Integer> lines = stored.getOrDefault(cartId, Map.of());
+                holds.computeIfPresent(cartId, (id, hold) -> {
+                    hold.lines.entrySet().removeIf(entry -> {
+                        Line line = entry.getValue();
+                        if (line.changedAt >= changedSince) {
+                            return false;
+                        }
+                        int quantity = Math.min(line.quantity, lines.getOrDefault(entry.getKey(), 0));
+                        counters.release(line.slot, line.quantity - quantity);
+                        line.quantity = quantity;
+                        return quantity == 0;
+                    });
+                    return hold.lines.isEmpty() ? null : hold;
+                });
+            }
+        }
+    }
+
+    /**
+     * Moves the line to the target quantity and returns what it held before. When
+     * {@code strict}, a shortfall throws; otherwise the line keeps what could be reserved.
+     */
+    private int apply(UUID cartId, UUID medicineId, int quantity, boolean strict) {
+        int slot = slotFor(medicineId);
+        long now = System.currentTimeMillis();
+        int[] previous = new int[1];
+
+        holds.compute(cartId, (id, hold) -> {
+            CartHold target = hold != null ? hold : new CartHold();
+            Line line = target.lines.get(medicineId);
+            int held = line != null ? line.quantity : 0;
+            previous[0] = held;
+
+            int applied = quantity;
+            if (quantity > held && !counters.tryReserve(slot, quantity - held)) {
+                if (strict) {
+                    throw new PharmacyException("Only " + (held + Math.max(0, counters.available(slot)))
+                            + " units of this medicine are available", HttpStatus.CONFLICT, "INSUFFICIENT_STOCK");
+                }
+                applied = held;
+            } else if (quantity < held) {
+                counters.release(slot, held - quantity);
+            }
+
+            if (applied > 0) {
+                if (line == null) {
+                    line = new Line(slot);
+                    target.lines.put(medicineId, line);
+                }
+                line.quantity = applied;
+                line.changedAt = now;
+            } else {
+                target.lines.remove(medicineId);
+            }
+            target.expiresAt = now + ttlMs;
+            return target.lines.isEmpty() ? null : target;
+        });
+        return previous[0];
+    }
+
+    private void releaseHold(UUID cartId) {
+        holds.computeIfPresent(cartId, (id, hold) -> {
+            hold.lines.values().forEach(line -> counters.release(line.slot, line.quantity));
+            return null;
+        });
+    }
+
+    // Medicines first seen between reconciliations get their stock loaded on demand
+    private int slotFor(UUID medicineId) {
+        int slot = counters.slotOf(medicineId);
+        if (slot >= 0) {
+            return slot;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Number> stock = entityManager.createNativeQuery(
+                        "SELECT total_stock FROM medicine_inventory_summary WHERE medicine_id = :medicineId")
+                .setParameter("medicineId", medicineId)
+                .getResultList();
+
+        return counters.register(medicineId, stock.isEmpty() ? 0 : stock.get(0).longValue());
+    }
+
+    private static void afterRollback(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    action.run();
+                }
+            }
+        });
+    }
+
+    // Mutated only inside ConcurrentHashMap.compute for the owning cart
+    private static final class CartHold {
+        private final Map<UUID, Line> lines = new HashMap<>();
+        private volatile long expiresAt;
+    }
+
+    private static final class Line {
+        private final int slot;
+        private int quantity;
+        private long changedAt;
+
+        private Line(int slot) {
+            this.slot = slot;
+        }
+    }
+}
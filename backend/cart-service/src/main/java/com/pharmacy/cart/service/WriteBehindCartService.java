@@ -0,0 +1,543 @@
+package com.pharmacy.cart.service;
+
+import com.pharmacy.cart.dto.CartItemDto;
+import com.pharmacy.cart.pricing.MedicinePricing;
+import com.pharmacy.cart.store.MemoryCart;
+import com.pharmacy.common.exception.PharmacyException;
+import com.pharmacy.common.money.Money;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Optional write-behind cart store. Active carts live in memory, keyed by patient, and are
+ * read and changed there under a per-cart lock; changes are coalesced per line and written
+ * to carts/cart_items in batches every flush interval, before checkout and on shutdown.
+ * <p>
+ * A cart is loaded from the database on first use and dropped once it has been idle
+ * (and flushed) for the idle time, or when the store grows past its size. A cart deleted
+ * from the database by checkout is dropped at the next flush instead of being written back.
+ * Each patient's cart must be served by a single instance while this mode is enabled.
+ * <p>
+ * Operations run outside any transaction: a request borrows a connection only to load its
+ * cart or describe new lines, and flushes take their own.
+ */
+@Service
+@Slf4j
+public class WriteBehindCartService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final StockReservationService reservationService;
+    private final MedicinePricingService pricingService;
+
+    private final Map<UUID, MemoryCart> carts = new ConcurrentHashMap<>();
+    private final Set<UUID> dirty = ConcurrentHashMap.newKeySet();
+
+    // Serializes flushes, so a cart's drained changes are written in the order they were taken
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    @Getter
+    @Value("${cart.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${cart.write-behind.max-carts:10000}")
+    private int maxCarts;
+
+    @Value("${cart.write-behind.flush-batch-size:200}")
+    private int flushBatchSize;
+
+    @Value("${cart.write-behind.idle-ms:1800000}")
+    private long idleMs;
+
+    public WriteBehindCartService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                  StockReservationService reservationService, MedicinePricingService pricingService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.reservationService = reservationService;
+        this.pricingService = pricingService;
+    }
+
+    public CartView getCart(UUID patientId) {
+        return withCart(patientId, cart -> {
+            reservationService.touch(cart.getId());
+            return view(cart);
+        });
+    }
+
+    /**
+     * Adds to the line for the medicine. A new line is priced from the pricing cache; an
+     * existing line keeps its price.
+     */
+    public CartView addToCart(UUID patientId, UUID medicineId, int quantity) {
+        // Looked up before taking the cart lock; only used if the line is new
+        Optional<MedicinePricing> pricing = pricingService.getPricing(medicineId);
+        return withCart(patientId, cart -> {
+            MemoryCart.Line line = cart.line(medicineId);
+            if (line == null) {
+                MedicinePricing price = pricing.orElseThrow(() -> new PharmacyException(
+                        "Medicine not found or not available", HttpStatus.NOT_FOUND, "MEDICINE_NOT_AVAILABLE"));
+                line = newLine(medicineId, price);
+            }
+            int target = line.quantity() + quantity;
+            reservationService.reserve(cart.getId(), medicineId, target);
+            cart.put(line.withQuantity(target));
+            return changed(cart);
+        });
+    }
+
+    /**
+     * Adds several medicines under one cart lock, with the prices given for new lines and
+     * one query to describe them. Lines change only once every hold is taken; holds taken
+     * before a failing one are given back before the failure is rethrown.
+     */
+    public CartView addAllToCart(UUID patientId, Map<UUID, Integer> quantities, Map<UUID, MedicinePricing> pricing) {
+        return withCart(patientId, cart -> {
+            List<UUID> added = quantities.keySet().stream()
+                    .filter(medicineId -> cart.line(medicineId) == null)
+                    .toList();
+            Map<UUID, MemoryCart.Line> newLines = newLines(added, pricing);
+
+            List<MemoryCart.Line> lines = new ArrayList<>(quantities.size());
+            try {
+                for (Map.Entry<UUID, Integer> item : quantities.entrySet()) {
+                    MemoryCart.Line line = cart.line(item.getKey());
+                    if (line == null) {
+                        line = newLines.get(item.getKey());
+                    }
+                    int target = line.quantity() + item.getValue();
+                    reservationService.reserve(cart.getId(), item.getKey(), target);
+                    lines.add(line.withQuantity(target));
+                }
+            } catch (RuntimeException e) {
+                // No transaction to roll the holds back: set them to the cart's unchanged quantities
+                for (MemoryCart.Line line : lines) {
+                    MemoryCart.Line current = cart.line(line.medicineId());
+                    reservationService.reserve(cart.getId(), line.medicineId(),
+                            current != null ? current.quantity() : 0);
+                }
+                throw e;
+            }
+            lines.forEach(cart::put);
+            return changed(cart);
+        });
+    }
+
+    public CartView updateCartItem(UUID patientId, UUID itemId, int quantity) {
+        return withCart(patientId, cart -> {
+            MemoryCart.Line line = requireLine(cart, itemId);
+            reservationService.reserve(cart.getId(), line.medicineId(), quantity);
+            cart.put(line.withQuantity(quantity));
+            return changed(cart);
+        });
+    }
+
+    public CartView removeFromCart(UUID patientId, UUID itemId) {
+        return withCart(patientId, cart -> {
+            MemoryCart.Line line = requireLine(cart, itemId);
+            reservationService.release(cart.getId(), line.medicineId());
+            cart.remove(line.medicineId());
+            return changed(cart);
+        });
+    }
+
+    public void clearCart(UUID patientId) {
+        withCart(patientId, cart -> {
+            cart.clear();
+            reservationService.releaseCart(cart.getId());
+            return changed(cart);
+        });
+    }
+
+    /**
+     * Writes the patient's pending changes and drops the cart from memory, so that checkout
+     * reads the current cart from the database and the next request reloads it.
+     */
+    public void flushAndEvict(UUID patientId) {
+        flushLock.lock();
+        try {
+            flush(List.of(patientId));
+            MemoryCart cart = carts.get(patientId);
+            if (cart != null) {
+                synchronized (cart) {
+                    // Changed again while it was written: keep it, the next flush picks it up
+                    if (!cart.isDirty()) {
+                        evict(cart);
+                    }
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cart.write-behind.flush-interval-ms:1000}")
+    public void flushDirty() {
+        if (!enabled) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            if (!dirty.isEmpty()) {
+                flush(new ArrayList<>(dirty));
+            }
+            evictIdle();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        if (enabled && !dirty.isEmpty()) {
+            log.info("Flushing {} carts before shutdown", dirty.size());
+            flushDirty();
+        }
+    }
+
+    /**
+     * Runs the action on the patient's cart under its lock, loading the cart if needed.
+     */
+    private CartView withCart(UUID patientId, Function<MemoryCart, CartView> action) {
+        while (true) {
+            MemoryCart cart = carts.get(patientId);
+            if (cart == null) {
+                MemoryCart loaded = load(patientId);
+                cart = carts.putIfAbsent(patientId, loaded);
+                if (cart == null) {
+                    cart = loaded;
+                    if (carts.size() > maxCarts) {
+                        // Evict a little more than needed so that not every new cart pays for a scan
+                        evictLeastRecentlyUsed(carts.size() - maxCarts + Math.max(1, maxCarts / 100));
+                    }
+                }
+            }
+            synchronized (cart) {
+                if (!cart.isEvicted()) {
+                    cart.touch();
+                    return action.apply(cart);
+                }
+            }
+        }
+    }
+
+    private CartView changed(MemoryCart cart) {
+        dirty.add(cart.getPatientId());
+        return view(cart);
+    }
+
+    private void flush(List<UUID> patientIds) {
+        List<MemoryCart.Changes> batch = new ArrayList<>(Math.min(patientIds.size(), flushBatchSize));
+        for (UUID patientId : patientIds) {
+            dirty.remove(patientId);
+            MemoryCart cart = carts.get(patientId);
+            if (cart == null) {
+                continue;
+            }
+            MemoryCart.Changes changes;
+            synchronized (cart) {
+                changes = cart.drainChanges();
+            }
+            if (changes != null) {
+                batch.add(changes);
+            }
+            if (batch.size() == flushBatchSize) {
+                write(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    /**
+     * Writes one batch in a transaction: touches the cart rows, upserts changed lines and
+     * deletes removed ones, a single statement each. Carts whose row no longer exists were
+     * checked out or deleted elsewhere and are dropped. On failure the changes are put back.
+     */
+    private void write(List<MemoryCart.Changes> batch) {
+        try {
+            Set<UUID> missing = transactionTemplate.execute(status -> {
+                Set<UUID> existing = touchCarts(batch);
+                List<MemoryCart.Changes> writable = batch.stream()
+                        .filter(changes -> existing.contains(changes.cartId()))
+                        .toList();
+                upsertLines(writable);
+                deleteLines(writable);
+
+                Set<UUID> gone = new HashSet<>();
+                batch.forEach(changes -> gone.add(changes.patientId()));
+                writable.forEach(changes -> gone.remove(changes.patientId()));
+                return gone;
+            });
+            missing.forEach(this::dropDeleted);
+            log.debug("Flushed {} carts", batch.size() - missing.size());
+        } catch (Exception e) {
+            log.error("Error flushing {} carts, will retry", batch.size(), e);
+            for (MemoryCart.Changes changes : batch) {
+                MemoryCart cart = carts.get(changes.patientId());
+                if (cart != null) {
+                    synchronized (cart) {
+                        cart.restoreChanges(changes);
+                    }
+                    dirty.add(changes.patientId());
+                }
+            }
+        }
+    }
+
+    private Set<UUID> touchCarts(List<MemoryCart.Changes> batch) {
+        StringBuilder sql = new StringBuilder("UPDATE carts SET updated_at = v.updated_at FROM (VALUES ");
+        Object[] args = new Object[batch.size() * 2];
+        int i = 0;
+        for (MemoryCart.Changes changes : batch) {
+            sql.append(i == 0 ? "" : ", ").append("(CAST(? AS UUID), CAST(? AS TIMESTAMP))");
+            args[i++] = changes.cartId();
+            args[i++] = changes.updatedAt();
+        }
+        sql.append(") AS v(id, updated_at) WHERE carts.id = v.id RETURNING carts.id");
+        return new HashSet<>(jdbcTemplate.queryForList(sql.toString(), UUID.class, args));
+    }
+
+    private void upsertLines(List<MemoryCart.Changes> batch) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(
+                "INSERT INTO cart_items (id, cart_id, medicine_id, quantity, unit_price, discount_percentage, " +
+                "created_at) VALUES ");
+        for (MemoryCart.Changes changes : batch) {
+            for (MemoryCart.Line line : changes.upserts()) {
+                sql.append(args.isEmpty() ? "" : ", ").append("(?, ?, ?, ?, ?, ?, ?)");
+                args.add(line.itemId());
+                args.add(changes.cartId());
+                args.add(line.medicineId());
+                args.add(line.quantity());
+                args.add(line.unitPrice());
+                args.add(line.discountPercentage());
+                args.add(line.createdAt());
+            }
+        }
+        if (args.isEmpty()) {
+            return;
+        }
+        // Memory holds the whole line: a line removed and re-added between flushes arrives here as one upsert
+        // with a new id and price, which must replace the old row rather than only its quantity
+        sql.append(" ON CONFLICT (cart_id, medicine_id) DO UPDATE SET id = EXCLUDED.id, " +
+                "quantity = EXCLUDED.quantity, unit_price = EXCLUDED.unit_price, " +
+                "discount_percentage = EXCLUDED.discount_percentage, created_at = EXCLUDED.created_at");
+        jdbcTemplate.update(sql.toString(), args.toArray(new Object[0]));
+    }
+
+    private void deleteLines(List<MemoryCart.Changes> batch) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("DELETE FROM cart_items ci USING (VALUES ");
+        for (MemoryCart.Changes changes : batch) {
+            for (UUID medicineId : changes.deletes()) {
+                sql.append(args.isEmpty() ? "" : ", ").append("(CAST(? AS UUID), CAST(? AS UUID))");
+                args.add(changes.cartId());
+                args.add(medicineId);
+            }
+        }
+        if (args.isEmpty()) {
+            return;
+        }
+        sql.append(") AS v(cart_id, medicine_id) WHERE ci.cart_id = v.cart_id AND ci.medicine_id = v.medicine_id");
+        jdbcTemplate.update(sql.toString(), args.toArray(new Object[0]));
+    }
+
+    private void dropDeleted(UUID patientId) {
+        MemoryCart cart = carts.get(patientId);
+        if (cart == null) {
+            return;
+        }
+        synchronized (cart) {
+            evict(cart);
+            reservationService.releaseCart(cart.getId());
+        }
+        log.info("Cart {} no longer exists in the database, dropped it from memory", cart.getId());
+    }
+
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleMs;
+        for (MemoryCart cart : carts.values()) {
+            synchronized (cart) {
+                if (cart.getLastAccess() < cutoff && !cart.isDirty()) {
+                    evict(cart);
+                }
+            }
+        }
+    }
+
+    // Carts that are still dirty are skipped; the store shrinks back once they are flushed
+    private void evictLeastRecentlyUsed(int count) {
+        List<MemoryCart> candidates = new ArrayList<>(carts.values());
+        candidates.sort(Comparator.comparingLong(MemoryCart::getLastAccess));
+        int evicted = 0;
+        for (MemoryCart cart : candidates) {
+            if (evicted == count) {
+                break;
+            }
+            synchronized (cart) {
+                if (!cart.isDirty() && !cart.isEvicted()) {
+                    evict(cart);
+                    evicted++;
+                }
+            }
+        }
+    }
+
+    // Caller holds the cart's lock
+    private void evict(MemoryCart cart) {
+        cart.evict();
+        carts.remove(cart.getPatientId(), cart);
+    }
+
+    /**
+     * Loads the patient's cart with its lines in one query, creating the cart row if the
+     * patient has none. Each statement commits on its own.
+     */
+    private MemoryCart load(UUID patientId) {
+        String query = """
+            SELECT c.id, c.created_at, c.updated_at,
+                   ci.id, ci.medicine_id, ci.quantity, ci.unit_price, ci.discount_percentage, ci.created_at,
+                   m.name, m.image_url, COALESCE(s.total_stock, 0)
+            FROM carts c
+            LEFT JOIN cart_items ci ON ci.cart_id = c.id
+            LEFT JOIN medicines m ON m.id = ci.medicine_id
+            LEFT JOIN medicine_inventory_summary s ON s.medicine_id = ci.medicine_id
+            WHERE c.patient_id = ?
+            ORDER BY ci.created_at, ci.id
+            """;
+
+        List<MemoryCart> loaded = new ArrayList<>(1);
+        jdbcTemplate.query(query, (ResultSet rs) -> {
+            if (loaded.isEmpty()) {
+                loaded.add(new MemoryCart(rs.getObject(1, UUID.class), patientId,
+                        toLocalDateTime(rs.getTimestamp(2)), toLocalDateTime(rs.getTimestamp(3))));
+            }
+            if (rs.getObject(4) != null) {
+                loaded.get(0).load(readLine(rs));
+            }
+        }, patientId);
+        if (!loaded.isEmpty()) {
+            return loaded.get(0);
+        }
+
+        String create = """
+            INSERT INTO carts (patient_id) VALUES (?)
+            ON CONFLICT (patient_id) DO UPDATE SET updated_at = CURRENT_TIMESTAMP
+            RETURNING id, created_at, updated_at
+            """;
+        return jdbcTemplate.queryForObject(create, (rs, row) -> new MemoryCart(rs.getObject(1, UUID.class),
+                patientId, toLocalDateTime(rs.getTimestamp(2)), toLocalDateTime(rs.getTimestamp(3))), patientId);
+    }
+
+    private static MemoryCart.Line readLine(ResultSet rs) throws SQLException {
+        String name = rs.getString(10);
+        BigDecimal discount = rs.getBigDecimal(8);
+        return new MemoryCart.Line(
+                rs.getObject(4, UUID.class),
+                rs.getObject(5, UUID.class),
+                name,
+                rs.getString(11),
+                name != null && rs.getLong(12) > 0,
+                rs.getInt(6),
+                rs.getBigDecimal(7),
+                discount != null ? discount : BigDecimal.ZERO,
+                toLocalDateTime(rs.getTimestamp(9)));
+    }
+
+    // Name and image are read once when the line is created and kept with the cart
+    private MemoryCart.Line newLine(UUID medicineId, MedicinePricing pricing) {
+        return newLines(List.of(medicineId), Map.of(medicineId, pricing)).get(medicineId);
+    }
+
+    private Map<UUID, MemoryCart.Line> newLines(List<UUID> medicineIds, Map<UUID, MedicinePricing> pricing) {
+        if (medicineIds.isEmpty()) {
+            return Map.of();
+        }
+        String query = """
+            SELECT m.id, m.name, m.image_url, COALESCE(s.total_stock, 0)
+            FROM medicines m
+            LEFT JOIN medicine_inventory_summary s ON s.medicine_id = m.id
+            WHERE m.id IN (%s)
+            """.formatted(String.join(", ", Collections.nCopies(medicineIds.size(), "?")));
+        LocalDateTime now = LocalDateTime.now();
+        Map<UUID, MemoryCart.Line> lines = new HashMap<>();
+        jdbcTemplate.query(query, (ResultSet rs) -> {
+            UUID medicineId = rs.getObject(1, UUID.class);
+            MedicinePricing price = pricing.get(medicineId);
+            lines.put(medicineId, new MemoryCart.Line(UUID.randomUUID(), medicineId, rs.getString(2),
+                    rs.getString(3), rs.getLong(4) > 0, 0, price.unitPrice(), price.discountPercentage(), now));
+        }, medicineIds.toArray());
+        if (lines.size() < medicineIds.size()) {
+            throw new PharmacyException("Medicine not found or not available", HttpStatus.NOT_FOUND,
+                    "MEDICINE_NOT_AVAILABLE");
+        }
+        return lines;
+    }
+
+    private static MemoryCart.Line requireLine(MemoryCart cart, UUID itemId) {
+        MemoryCart.Line line = cart.lineById(itemId);
+        if (line == null) {
+            throw new PharmacyException("Cart item not found", HttpStatus.NOT_FOUND, "CART_ITEM_NOT_FOUND");
+        }
+        return line;
+    }
+
+    // Caller holds the cart's lock
+    private CartView view(MemoryCart cart) {
+        List<CartItemDto> items = new ArrayList<>(cart.lines().size());
+        for (MemoryCart.Line line : cart.lines()) {
+            Boolean inStock = reservationService.inStock(line.medicineId());
+            items.add(CartItemDto.builder()
+                    .id(line.itemId())
+                    .medicineId(line.medicineId())
+                    .medicineName(line.medicineName() != null ? line.medicineName() : "Unknown Medicine")
+                    .medicineImageUrl(line.medicineImageUrl())
+                    .quantity(line.quantity())
+                    .unitPrice(line.unitPrice())
+                    .discountPercentage(line.discountPercentage())
+                    .totalPrice(Money.lineTotal(line.unitPrice(), line.quantity(), line.discountPercentage()))
+                    .inStock(inStock != null ? inStock : line.inStock())
+                    .build());
+        }
+        return new CartView(cart.getId(), cart.getPatientId(), items, cart.getCreatedAt(), cart.getUpdatedAt());
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+
+    /**
+     * A cart as read from memory, ready to be rendered.
+     */
+    public record CartView(UUID id, UUID patientId, List<CartItemDto> items,
+                           LocalDateTime createdAt, LocalDateTime updatedAt) {}
+}
@@ -0,0 +1,165 @@
+package com.pharmacy.cart.store;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A patient's cart held by the write-behind store. Not thread-safe: callers synchronize on
+ * the instance. Changed lines are tracked by medicine id until drained for a flush, so any
+ * number of changes to a line between flushes is written once, as its latest state.
+ */
+public final class MemoryCart {
+
+    @Getter
+    private final UUID id;
+
+    @Getter
+    private final UUID patientId;
+
+    @Getter
+    private final LocalDateTime createdAt;
+
+    @Getter
+    private LocalDateTime updatedAt;
+
+    // Lines by medicine id, in the order they were added
+    private final Map<UUID, Line> lines = new LinkedHashMap<>();
+
+    // Medicines whose line changed since the last drain
+    private final Set<UUID> changed = new HashSet<>();
+
+    @Getter
+    private long lastAccess;
+
+    // Set once the cart is dropped from the store; a caller holding a stale reference reloads
+    @Getter
+    private boolean evicted;
+
+    public MemoryCart(UUID id, UUID patientId, LocalDateTime createdAt, LocalDateTime updatedAt) {
+        this.id = id;
+        this.patientId = patientId;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.lastAccess = System.currentTimeMillis();
+    }
+
+    public Collection<Line> lines() {
+        return lines.values();
+    }
+
+    public Line line(UUID medicineId) {
+        return lines.get(medicineId);
+    }
+
+    public Line lineById(UUID itemId) {
+        for (Line line : lines.values()) {
+            if (line.itemId().equals(itemId)) {
+                return line;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds a line as loaded from the database; it is not a pending change.
+     */
+    public void load(Line line) {
+        lines.put(line.medicineId(), line);
+    }
+
+    public void put(Line line) {
+        lines.put(line.medicineId(), line);
+        changed(line.medicineId());
+    }
+
+    public void remove(UUID medicineId) {
+        if (lines.remove(medicineId) != null) {
+            changed(medicineId);
+        }
+    }
+
+    public void clear() {
+        lines.keySet().forEach(changed::add);
+        lines.clear();
+        updatedAt = LocalDateTime.now();
+    }
+
+    public boolean isDirty() {
+        return !changed.isEmpty();
+    }
+
+    public void touch() {
+        lastAccess = System.currentTimeMillis();
+    }
+
+    public void evict() {
+        evicted = true;
+    }
+
+    /**
+     * Current state of every changed line (absent lines become deletes) and resets the
+     * change set; null when nothing changed.
+     */
+    public Changes drainChanges() {
+        if (changed.isEmpty()) {
+            return null;
+        }
+        List<Line> upserts = new ArrayList<>();
+        List<UUID> deletes = new ArrayList<>();
+        for (UUID medicineId : changed) {
+            Line line = lines.get(medicineId);
+            if (line != null) {
+                upserts.add(line);
+            } else {
+                deletes.add(medicineId);
+            }
+        }
+        changed.clear();
+        return new Changes(id, patientId, updatedAt, upserts, deletes);
+    }
+
+    /**
+     * Marks the lines of a failed flush as changed again, so the next flush rewrites them.
+     */
+    public void restoreChanges(Changes changes) {
+        changes.upserts().forEach(line -> changed.add(line.medicineId()));
+        changed.addAll(changes.deletes());
+    }
+
+    private void changed(UUID medicineId) {
+        changed.add(medicineId);
+        updatedAt = LocalDateTime.now();
+    }
+
+    public record Line(
+            UUID itemId,
+            UUID medicineId,
+            String medicineName,
+            String medicineImageUrl,
+            boolean inStock,
+            int quantity,
+            BigDecimal unitPrice,
+            BigDecimal discountPercentage,
+            LocalDateTime createdAt
+    ) {
+        public Line withQuantity(int quantity) {
+            return new Line(itemId, medicineId, medicineName, medicineImageUrl, inStock, quantity,
+                    unitPrice, discountPercentage, createdAt);
+        }
+    }
+
+    /**
+     * Pending writes of one cart: lines to upsert and medicines whose line is gone.
+     */
+    public record Changes(UUID cartId, UUID patientId, LocalDateTime updatedAt, List<Line> upserts, List<UUID> deletes) {}
+}
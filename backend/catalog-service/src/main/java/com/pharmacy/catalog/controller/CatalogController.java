@@ -1,15 +1,34 @@
 package com.pharmacy.catalog.controller;
 
 import com.pharmacy.common.dto.ApiResponse;
+import com.pharmacy.catalog.dto.CatalogChangesPage;
+import com.pharmacy.catalog.dto.CatalogFacets;
+import com.pharmacy.catalog.dto.CursorPage;
+import com.pharmacy.catalog.dto.MedicineBatchItem;
+import com.pharmacy.catalog.dto.MedicineBatchRequest;
 import com.pharmacy.catalog.dto.MedicineDto;
+import com.pharmacy.catalog.dto.SubstituteDto;
+import com.pharmacy.catalog.dto.SuggestionDto;
 import com.pharmacy.catalog.model.Medicine;
-import com.pharmacy.catalog.service.CatalogService;
+import com.pharmacy.catalog.service.CatalogChangeService;
+import com.pharmacy.catalog.service.CatalogExportService;
+import com.pharmacy.catalog.service.CatalogSnapshotService;
+import com.pharmacy.catalog.service.SubstitutionService;
+import com.pharmacy.catalog.snapshot.CacheValidator;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Slf4j
@@ -19,55 +38,172 @@ import java.util.UUID;
 @CrossOrigin(origins = "${cors.allowed-origins:http://localhost:3000}")
 public class CatalogController {
     
-    private final CatalogService catalogService;
+    private final CatalogSnapshotService snapshotService;
+    private final CatalogExportService catalogExportService;
+    private final CatalogChangeService catalogChangeService;
+    private final SubstitutionService substitutionService;
     
     @GetMapping("/medicines")
-    public ResponseEntity<ApiResponse<List<MedicineDto>>> getAllMedicines(
+    public ResponseEntity<ApiResponse<CursorPage<MedicineDto>>> getAllMedicines(
             @RequestParam(required = false, name = "search") String search,
             @RequestParam(required = false, name = "form") String form,
             @RequestParam(required = false, name = "schedule") String schedule,
-            @RequestParam(required = false, name = "prescriptionRequired") Boolean prescriptionRequired
+            @RequestParam(required = false, name = "prescriptionRequired") Boolean prescriptionRequired,
+            @RequestParam(required = false, name = "cursor") String cursor,
+            @RequestParam(required = false, name = "limit") Integer limit,
+            WebRequest webRequest
     ) {
-        log.info("Get medicines request - search: {}, form: {}, schedule: {}, prescriptionRequired: {}", 
-                search, form, schedule, prescriptionRequired);
+        if (isNotModified(webRequest, snapshotService.catalogValidator())) {
+            return null;
+        }
         
-        List<MedicineDto> medicines;
+        log.info("Get medicines request - search: {}, form: {}, schedule: {}, prescriptionRequired: {}, limit: {}", 
+                search, form, schedule, prescriptionRequired, limit);
         
-        // Check if any filter/search is provided
-        boolean hasSearch = search != null && !search.trim().isEmpty();
-        boolean hasFilters = form != null || schedule != null || prescriptionRequired != null;
+        Medicine.Form formEnum = form != null ? Medicine.Form.valueOf(form.toUpperCase()) : null;
+        Medicine.Schedule scheduleEnum = schedule != null ? Medicine.Schedule.valueOf(schedule.toUpperCase()) : null;
         
-        if (hasSearch || hasFilters) {
-            Medicine.Form formEnum = form != null ? Medicine.Form.valueOf(form.toUpperCase()) : null;
-            Medicine.Schedule scheduleEnum = schedule != null ? Medicine.Schedule.valueOf(schedule.toUpperCase()) : null;
-            
-            medicines = catalogService.searchAndFilterMedicines(
-                    search,
-                    formEnum,
-                    scheduleEnum,
-                    prescriptionRequired
-            );
-        } else {
-            medicines = catalogService.getAllMedicines();
-        }
+        CursorPage<MedicineDto> medicines = snapshotService.pageMedicines(
+                search,
+                formEnum,
+                scheduleEnum,
+                prescriptionRequired,
+                cursor,
+                limit
+        );
         
-        return ResponseEntity.ok(ApiResponse.success(medicines));
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .body(ApiResponse.success(medicines));
     }
     
     @GetMapping("/medicines/{id}")
-    public ResponseEntity<ApiResponse<MedicineDto>> getMedicineById(@PathVariable(name = "id") UUID id) {
+    public ResponseEntity<ApiResponse<MedicineDto>> getMedicineById(
+            @PathVariable(name = "id") UUID id,
+            WebRequest webRequest
+    ) {
+        if (isNotModified(webRequest, snapshotService.medicineValidator(id))) {
+            return null;
+        }
+        
         log.info("Get medicine by id: {}", id);
-        MedicineDto medicine = catalogService.getMedicineById(id);
-        return ResponseEntity.ok(ApiResponse.success(medicine));
+        MedicineDto medicine = snapshotService.getMedicineById(id);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .body(ApiResponse.success(medicine));
+    }
+    
+    /**
+     * In-stock medicines with the same generic name, strength and form, cheapest first.
+     * Not cached: stock and prices are read live.
+     */
+    @GetMapping("/medicines/{id}/substitutes")
+    public ResponseEntity<ApiResponse<List<SubstituteDto>>> getSubstitutes(
+            @PathVariable(name = "id") UUID id,
+            @RequestParam(required = false, name = "limit") Integer limit
+    ) {
+        log.debug("Get substitutes for medicine: {}", id);
+        List<SubstituteDto> substitutes = substitutionService.findSubstitutes(id, limit);
+        return ResponseEntity.ok(ApiResponse.success(substitutes));
+    }
+    
+    @PostMapping("/medicines/batch")
+    public ResponseEntity<ApiResponse<List<MedicineBatchItem>>> getMedicinesByIds(
+            @Valid @RequestBody MedicineBatchRequest request
+    ) {
+        log.info("Batch lookup of {} medicines", request.getIds().size());
+        List<MedicineBatchItem> items = snapshotService.getMedicinesByIds(request.getIds());
+        return ResponseEntity.ok(ApiResponse.success(items));
     }
     
     @GetMapping("/medicines/search")
-    public ResponseEntity<ApiResponse<List<MedicineDto>>> searchMedicines(
-            @RequestParam(name = "q") String q
+    public ResponseEntity<ApiResponse<CursorPage<MedicineDto>>> searchMedicines(
+            @RequestParam(name = "q") String q,
+            @RequestParam(required = false, name = "cursor") String cursor,
+            @RequestParam(required = false, name = "limit") Integer limit,
+            WebRequest webRequest
     ) {
+        if (isNotModified(webRequest, snapshotService.catalogValidator())) {
+            return null;
+        }
+        
         log.info("Search medicines with query: {}", q);
-        List<MedicineDto> medicines = catalogService.searchMedicines(q);
-        return ResponseEntity.ok(ApiResponse.success(medicines));
+        CursorPage<MedicineDto> medicines = snapshotService.pageMedicines(q, null, null, null, cursor, limit);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .body(ApiResponse.success(medicines));
+    }
+    
+    /**
+     * Streams every active medicine with its inventory aggregates as NDJSON (default) or CSV.
+     * Rows are written as they are read from the database, not wrapped in ApiResponse.
+     */
+    @GetMapping("/medicines/export")
+    public ResponseEntity<StreamingResponseBody> exportMedicines(
+            @RequestParam(required = false, name = "format", defaultValue = "ndjson") String format
+    ) {
+        CatalogExportService.Format exportFormat = CatalogExportService.Format.from(format);
+        log.info("Export medicines as {}", exportFormat);
+        
+        MediaType mediaType = exportFormat == CatalogExportService.Format.CSV
+                ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                : new MediaType("application", "x-ndjson", StandardCharsets.UTF_8);
+        String filename = "medicines." + exportFormat.name().toLowerCase();
+        
+        StreamingResponseBody body = out -> catalogExportService.export(exportFormat, out);
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .body(body);
+    }
+    
+    @GetMapping("/medicines/facets")
+    public ResponseEntity<ApiResponse<CatalogFacets>> getFacets(
+            @RequestParam(required = false, name = "search") String search,
+            @RequestParam(required = false, name = "form") String form,
+            @RequestParam(required = false, name = "schedule") String schedule,
+            @RequestParam(required = false, name = "prescriptionRequired") Boolean prescriptionRequired
+    ) {
+        log.debug("Get facets - search: {}, form: {}, schedule: {}, prescriptionRequired: {}",
+                search, form, schedule, prescriptionRequired);
+        
+        Medicine.Form formEnum = form != null ? Medicine.Form.valueOf(form.toUpperCase()) : null;
+        Medicine.Schedule scheduleEnum = schedule != null ? Medicine.Schedule.valueOf(schedule.toUpperCase()) : null;
+        
+        CatalogFacets facets = snapshotService.facets(search, formEnum, scheduleEnum, prescriptionRequired);
+        return ResponseEntity.ok(ApiResponse.success(facets));
+    }
+    
+    /**
+     * Catalog changes after the given sync token, oldest first, for delta synchronization.
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<ApiResponse<CatalogChangesPage>> getChanges(
+            @RequestParam(required = false, name = "since") String since,
+            @RequestParam(required = false, name = "limit") Integer limit
+    ) {
+        log.debug("Get catalog changes since: {}", since);
+        CatalogChangesPage changes = catalogChangeService.getChangesSince(since, limit);
+        return ResponseEntity.ok(ApiResponse.success(changes));
+    }
+    
+    @GetMapping("/suggest")
+    public ResponseEntity<ApiResponse<List<SuggestionDto>>> suggest(
+            @RequestParam(name = "q") String q,
+            @RequestParam(required = false, name = "limit") Integer limit
+    ) {
+        log.debug("Suggest medicines for prefix: {}", q);
+        List<SuggestionDto> suggestions = snapshotService.suggest(q, limit);
+        return ResponseEntity.ok(ApiResponse.success(suggestions));
+    }
+    
+    /**
+     * Answers If-None-Match / If-Modified-Since from the snapshot's validators, before any
+     * work is done. On a miss the ETag and Last-Modified headers are already set on the response.
+     * The validator is read before the body, so the body is never older than its ETag.
+     */
+    private boolean isNotModified(WebRequest webRequest, Optional<CacheValidator> validator) {
+        return validator.isPresent()
+                && webRequest.checkNotModified(validator.get().etag(), validator.get().lastModifiedMillis());
     }
 }
-
@@ -0,0 +1,46 @@
+package com.pharmacy.catalog.controller;
+
+import com.pharmacy.catalog.dto.InventoryImportStatus;
+import com.pharmacy.catalog.service.InventoryImportService;
+import com.pharmacy.common.dto.ApiResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+import java.util.UUID;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/catalog/inventory/imports")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "${cors.allowed-origins:http://localhost:3000}")
+public class InventoryImportController {
+    
+    private final InventoryImportService importService;
+    
+    /**
+     * Queues a supplier CSV for import. Columns (header required, any order): medicineId,
+     * batchNumber, expiryDate, quantityAvailable, unitPrice, mrp, discountPercentage, warehouseLocation.
+     */
+    @PostMapping
+    public ResponseEntity<ApiResponse<InventoryImportStatus>> startImport(@RequestParam("file") MultipartFile file) {
+        log.info("Inventory import upload: {}", file.getOriginalFilename());
+        InventoryImportStatus status = importService.submit(file);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success("Inventory import queued", status));
+    }
+    
+    @GetMapping
+    public ResponseEntity<ApiResponse<List<InventoryImportStatus>>> getRecentImports() {
+        return ResponseEntity.ok(ApiResponse.success(importService.getRecentJobs()));
+    }
+    
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ApiResponse<InventoryImportStatus>> getImportStatus(@PathVariable(name = "jobId") UUID jobId) {
+        return ResponseEntity.ok(ApiResponse.success(importService.getStatus(jobId)));
+    }
+}
@@ -0,0 +1,22 @@
+package com.pharmacy.catalog.dto;
+
+import com.pharmacy.catalog.model.CatalogChange;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogChangeDto {
+    private String token; // pass as "since" to resume after this change
+    private UUID medicineId;
+    private CatalogChange.EntityType entity;
+    private CatalogChange.ChangeType changeType;
+    private LocalDateTime changedAt;
+}
@@ -0,0 +1,18 @@
+package com.pharmacy.catalog.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogChangesPage {
+    private List<CatalogChangeDto> changes;
+    private String nextToken; // "since" for the next request; unchanged when there is nothing new
+    private boolean hasMore;
+}
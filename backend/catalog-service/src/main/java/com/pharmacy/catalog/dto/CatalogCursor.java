@@ -0,0 +1,80 @@
+package com.pharmacy.catalog.dto;
+
+import com.pharmacy.common.exception.PharmacyException;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Keyset position in a catalog listing: the sort key of the last item returned.
+ * Listings are ordered by (rank desc, name, id); rank is the search relevance score
+ * and is 0 for unranked listings. Clients only ever see the opaque encoded form.
+ * <p>
+ * The snapshot and the database fallback rank and collate differently, so a cursor
+ * records which of them issued it and is only accepted by the same one.
+ */
+public record CatalogCursor(Ordering ordering, int rank, String name, UUID id) {
+    
+    /**
+     * Who ordered the listing: the in-memory snapshot (relevance, then Java string and UUID
+     * order) or the database fallback (database collation and uuid order, no relevance).
+     */
+    public enum Ordering {
+        SNAPSHOT('s'), DATABASE('d');
+        
+        private final char tag;
+        
+        Ordering(char tag) {
+            this.tag = tag;
+        }
+        
+        static Ordering ofTag(String tag) {
+            for (Ordering ordering : values()) {
+                if (tag.length() == 1 && tag.charAt(0) == ordering.tag) {
+                    return ordering;
+                }
+            }
+            throw new IllegalArgumentException("Unknown cursor ordering: " + tag);
+        }
+    }
+    
+    public String encode() {
+        String raw = ordering.tag + "|" + rank + "|" + id + "|" + name;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    public static CatalogCursor of(Ordering ordering, MedicineDto medicine, int rank) {
+        return new CatalogCursor(ordering, rank, medicine.getName(), medicine.getId());
+    }
+    
+    /**
+     * Rejects a cursor issued by the other ordering with 410 CURSOR_EXPIRED: positions are
+     * not comparable across orderings, so the client has to restart the listing.
+     */
+    public CatalogCursor requireOrdering(Ordering expected) {
+        if (ordering != expected) {
+            throw new PharmacyException("Cursor has expired, restart the listing",
+                    HttpStatus.GONE, "CURSOR_EXPIRED");
+        }
+        return this;
+    }
+    
+    /**
+     * Decodes a cursor token; null or blank means "from the beginning".
+     */
+    public static CatalogCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 4);
+            return new CatalogCursor(Ordering.ofTag(parts[0]), Integer.parseInt(parts[1]), parts[3],
+                    UUID.fromString(parts[2]));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new PharmacyException("Invalid cursor", HttpStatus.BAD_REQUEST, "INVALID_CURSOR");
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.pharmacy.catalog.dto;
+
+import com.pharmacy.catalog.model.Medicine;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogFacets {
+    private int total; // medicines matching the search and all selected filters
+    private Map<Medicine.Form, Integer> forms;
+    private Map<Medicine.Schedule, Integer> schedules;
+    private Map<Boolean, Integer> prescriptionRequired;
+}
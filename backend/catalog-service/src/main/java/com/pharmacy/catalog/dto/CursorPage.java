@@ -0,0 +1,20 @@
+package com.pharmacy.catalog.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> items;
+    private String nextCursor; // null on the last page
+    private boolean hasMore;
+    private int limit;
+    private boolean fuzzy; // items are typo-tolerant matches because the exact search found none
+}
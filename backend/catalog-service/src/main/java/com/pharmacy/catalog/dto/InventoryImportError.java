@@ -0,0 +1,15 @@
+package com.pharmacy.catalog.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryImportError {
+    private long row; // data row number, 1-based, header excluded
+    private String message;
+}
@@ -0,0 +1,32 @@
+package com.pharmacy.catalog.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryImportStatus {
+    private UUID jobId;
+    private String fileName;
+    private State state;
+    private long rowsRead;
+    private long rowsImported; // inserted or changed
+    private long rowsUnchanged;
+    private long rowsFailed;
+    private List<InventoryImportError> errors; // first errors only, see rowsFailed for the total
+    private String message;
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+    
+    public enum State {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+}
@@ -0,0 +1,15 @@
+package com.pharmacy.catalog.dto;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Aggregated inventory figures for a single medicine (non-expired batches only).
+ */
+public interface InventorySummary {
+    UUID getMedicineId();
+    Long getTotalStock();
+    BigDecimal getMinPrice();
+    BigDecimal getMinMrp();
+    BigDecimal getMaxDiscount();
+}
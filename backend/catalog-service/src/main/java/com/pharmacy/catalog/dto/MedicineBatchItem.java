@@ -0,0 +1,18 @@
+package com.pharmacy.catalog.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MedicineBatchItem {
+    private UUID id;
+    private boolean found;
+    private MedicineDto medicine; // null when not found
+}
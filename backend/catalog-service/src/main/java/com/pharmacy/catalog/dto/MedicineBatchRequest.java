@@ -0,0 +1,14 @@
+package com.pharmacy.catalog.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+public class MedicineBatchRequest {
+    
+    @NotEmpty(message = "At least one medicine id is required")
+    private List<UUID> ids;
+}
@@ -0,0 +1,11 @@
+package com.pharmacy.catalog.dto;
+
+import java.util.UUID;
+
+/**
+ * Units ordered per medicine over a recent window, used to weight suggestions.
+ */
+public interface MedicinePopularity {
+    UUID getMedicineId();
+    Long getUnitsOrdered();
+}
@@ -0,0 +1,32 @@
+package com.pharmacy.catalog.dto;
+
+import com.pharmacy.catalog.model.Medicine;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubstituteDto {
+    private UUID medicineId;
+    private String name;
+    private String genericName;
+    private String manufacturer;
+    private String strength;
+    private Medicine.Form form;
+    private Boolean prescriptionRequired;
+    private Medicine.Schedule schedule;
+    private String imageUrl;
+    private Long availableStock;
+    // Best in-stock batch, as add-to-cart would price it
+    private BigDecimal unitPrice;
+    private BigDecimal discountPercentage;
+    private BigDecimal sellingPrice;
+    private BigDecimal mrp;
+}
@@ -0,0 +1,23 @@
+package com.pharmacy.catalog.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestionDto {
+    private String text;
+    private Type type;
+    private UUID medicineId; // set for MEDICINE suggestions only
+    private Boolean inStock;
+    
+    public enum Type {
+        MEDICINE, GENERIC, GENERIC_STRENGTH
+    }
+}
@@ -0,0 +1,99 @@
+package com.pharmacy.catalog.imports;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal streaming RFC 4180 reader: comma separated, double-quoted fields with doubled
+ * quotes as escapes, quoted fields may span lines. Reads one record at a time, so memory
+ * use does not depend on the file size.
+ */
+public final class CsvReader implements Closeable {
+
+    private final Reader reader;
+    private int pushedBack = -2;
+
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Next record, or null at end of input. Blank lines are skipped.
+     */
+    public List<String> readRecord() throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean sawAny = false;
+
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                if (!sawAny) {
+                    return null;
+                }
+                fields.add(field.toString());
+                return fields;
+            }
+
+            if (quoted) {
+                if (c == '"') {
+                    int next = read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        unread(next);
+                    }
+                } else {
+                    field.append((char) c);
+                }
+                continue;
+            }
+
+            if (c == '"' && field.length() == 0) {
+                quoted = true;
+                sawAny = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                sawAny = true;
+            } else if (c == '\r' || c == '\n') {
+                if (c == '\r') {
+                    int next = read();
+                    if (next != '\n') {
+                        unread(next);
+                    }
+                }
+                if (sawAny) {
+                    fields.add(field.toString());
+                    return fields;
+                }
+            } else {
+                field.append((char) c);
+                sawAny = true;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (pushedBack != -2) {
+            int c = pushedBack;
+            pushedBack = -2;
+            return c;
+        }
+        return reader.read();
+    }
+
+    private void unread(int c) {
+        pushedBack = c;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
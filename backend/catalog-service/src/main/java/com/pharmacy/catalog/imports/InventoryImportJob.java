@@ -0,0 +1,97 @@
+package com.pharmacy.catalog.imports;
+
+import com.pharmacy.catalog.dto.InventoryImportError;
+import com.pharmacy.catalog.dto.InventoryImportStatus;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Progress of one inventory import. Updated by the import thread and read by status
+ * requests, so every access goes through the object's monitor.
+ */
+public class InventoryImportJob {
+
+    private final UUID id = UUID.randomUUID();
+    private final String fileName;
+    private final Path file;
+    private final int maxErrors;
+    private final LocalDateTime createdAt = LocalDateTime.now();
+
+    private InventoryImportStatus.State state = InventoryImportStatus.State.QUEUED;
+    private long rowsRead;
+    private long rowsImported;
+    private long rowsUnchanged;
+    private long rowsFailed;
+    private final List<InventoryImportError> errors = new ArrayList<>();
+    private String message;
+    private LocalDateTime finishedAt;
+
+    public InventoryImportJob(String fileName, Path file, int maxErrors) {
+        this.fileName = fileName;
+        this.file = file;
+        this.maxErrors = maxErrors;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public synchronized void start() {
+        state = InventoryImportStatus.State.RUNNING;
+    }
+
+    public synchronized void rowRead() {
+        rowsRead++;
+    }
+
+    public synchronized void rowsWritten(long imported, long unchanged) {
+        rowsImported += imported;
+        rowsUnchanged += unchanged;
+    }
+
+    public synchronized void rowFailed(long row, String error) {
+        rowsFailed++;
+        if (errors.size() < maxErrors) {
+            errors.add(new InventoryImportError(row, error));
+        }
+    }
+
+    public synchronized void complete() {
+        state = InventoryImportStatus.State.COMPLETED;
+        finishedAt = LocalDateTime.now();
+    }
+
+    public synchronized void fail(String reason) {
+        state = InventoryImportStatus.State.FAILED;
+        message = reason;
+        finishedAt = LocalDateTime.now();
+    }
+
+    public synchronized boolean isFinished() {
+        return finishedAt != null;
+    }
+
+    public synchronized InventoryImportStatus toStatus() {
+        return InventoryImportStatus.builder()
+                .jobId(id)
+                .fileName(fileName)
+                .state(state)
+                .rowsRead(rowsRead)
+                .rowsImported(rowsImported)
+                .rowsUnchanged(rowsUnchanged)
+                .rowsFailed(rowsFailed)
+                .errors(List.copyOf(errors))
+                .message(message)
+                .createdAt(createdAt)
+                .finishedAt(finishedAt)
+                .build();
+    }
+}
@@ -0,0 +1,51 @@
+package com.pharmacy.catalog.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One entry of the catalog change feed. Triggers on medicines and medicine_inventory queue
+ * changes and the publisher moves them here with ids in commit order, so the id doubles as
+ * a sync token.
+ */
+@Entity
+@Immutable
+@Table(name = "catalog_changes")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogChange {
+    
+    @Id
+    private Long id;
+    
+    @Column(name = "medicine_id", nullable = false)
+    private UUID medicineId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private EntityType entity;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "change_type", nullable = false, length = 20)
+    private ChangeType changeType;
+    
+    @Column(name = "changed_at", nullable = false)
+    private LocalDateTime changedAt;
+    
+    public enum EntityType {
+        MEDICINE, INVENTORY
+    }
+    
+    public enum ChangeType {
+        CREATED, UPDATED, DISCONTINUED, DELETED, EXPIRED
+    }
+}
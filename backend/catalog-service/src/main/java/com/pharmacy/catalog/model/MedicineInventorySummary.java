@@ -0,0 +1,59 @@
+package com.pharmacy.catalog.model;
+
+import com.pharmacy.catalog.dto.InventorySummary;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Per-medicine inventory aggregates over non-expired batches. Rows are maintained by
+ * database triggers on medicine_inventory and rolled forward daily as batches expire,
+ * so the application only ever reads them.
+ */
+@Entity
+@Immutable
+@Table(name = "medicine_inventory_summary")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class MedicineInventorySummary implements InventorySummary {
+    
+    @Id
+    @Column(name = "medicine_id")
+    private UUID medicineId;
+    
+    @Column(name = "total_stock", nullable = false)
+    private Long totalStock = 0L;
+    
+    @Column(name = "min_price", precision = 10, scale = 2)
+    private BigDecimal minPrice;
+    
+    @Column(name = "min_mrp", precision = 10, scale = 2)
+    private BigDecimal minMrp;
+    
+    @Column(name = "max_discount", precision = 5, scale = 2)
+    private BigDecimal maxDiscount;
+    
+    // Price and discount of the cheapest in-stock batch
+    @Column(name = "best_unit_price", precision = 10, scale = 2)
+    private BigDecimal bestUnitPrice;
+    
+    @Column(name = "best_discount_percentage", precision = 5, scale = 2)
+    private BigDecimal bestDiscountPercentage;
+    
+    // Earliest expiry among counted batches; the row is recomputed once this date is reached
+    @Column(name = "next_expiry_date")
+    private LocalDate nextExpiryDate;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,45 @@
+package com.pharmacy.catalog.repository;
+
+import com.pharmacy.catalog.model.CatalogChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface CatalogChangeRepository extends JpaRepository<CatalogChange, Long> {
+    
+    List<CatalogChange> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+    
+    /**
+     * Latest change id; once every change has been pruned, the last one pruned.
+     */
+    @Query(value = "SELECT GREATEST(COALESCE(MAX(id), 0), (SELECT pruned_through FROM catalog_change_watermark)) " +
+                   "FROM catalog_changes", nativeQuery = true)
+    long findHeadId();
+    
+    /**
+     * Highest change id removed by pruning: tokens below it can no longer be served.
+     */
+    @Query(value = "SELECT pruned_through FROM catalog_change_watermark", nativeQuery = true)
+    long findPrunedThroughId();
+    
+    /**
+     * Moves up to limit queued changes into the feed and returns how many were published.
+     */
+    @Transactional
+    @Query(value = "SELECT publish_catalog_changes(:limit)", nativeQuery = true)
+    Integer publishQueued(@Param("limit") int limit);
+    
+    /**
+     * Deletes changes older than the cutoff, raising the pruning watermark, and returns how many were deleted.
+     */
+    @Transactional
+    @Query(value = "SELECT prune_catalog_changes(:cutoff)", nativeQuery = true)
+    Integer pruneChangedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
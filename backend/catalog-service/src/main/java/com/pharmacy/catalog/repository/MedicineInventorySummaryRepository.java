@@ -0,0 +1,39 @@
+package com.pharmacy.catalog.repository;
+
+import com.pharmacy.catalog.model.MedicineInventorySummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface MedicineInventorySummaryRepository extends JpaRepository<MedicineInventorySummary, UUID> {
+    
+    int LOOKUP_CHUNK_SIZE = 1000;
+    
+    /**
+     * {@link #findAllById} in chunks, so that any number of ids stays far below the JDBC
+     * driver's limit of 32767 bind parameters per statement.
+     */
+    default List<MedicineInventorySummary> findAllByIdInChunks(List<UUID> medicineIds) {
+        if (medicineIds.size() <= LOOKUP_CHUNK_SIZE) {
+            return findAllById(medicineIds);
+        }
+        List<MedicineInventorySummary> summaries = new ArrayList<>(medicineIds.size());
+        for (int from = 0; from < medicineIds.size(); from += LOOKUP_CHUNK_SIZE) {
+            summaries.addAll(findAllById(medicineIds.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, medicineIds.size()))));
+        }
+        return summaries;
+    }
+    
+    /**
+     * Recomputes summaries whose earliest counted batch has expired and returns how many were refreshed.
+     */
+    @Transactional
+    @Query(value = "SELECT roll_forward_inventory_summary()", nativeQuery = true)
+    Integer rollForward();
+}
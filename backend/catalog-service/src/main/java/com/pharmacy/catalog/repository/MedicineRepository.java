@@ -1,35 +1,66 @@
 package com.pharmacy.catalog.repository;
 
+import com.pharmacy.catalog.dto.MedicinePopularity;
 import com.pharmacy.catalog.model.Medicine;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
-public interface MedicineRepository extends JpaRepository<Medicine, UUID> {
+public interface MedicineRepository extends JpaRepository<Medicine, UUID>, JpaSpecificationExecutor<Medicine> {
     
-    List<Medicine> findByStatus(Medicine.Status status);
+    /**
+     * Medicines with the given status paired with their inventory summary row (null when the
+     * medicine has no inventory), read through a server-side cursor. Must be consumed inside a
+     * transaction and closed; callers should detach rows once written.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT m, s FROM Medicine m LEFT JOIN MedicineInventorySummary s ON s.medicineId = m.id " +
+           "WHERE m.status = :status ORDER BY m.name, m.id")
+    Stream<Object[]> streamWithInventorySummary(@Param("status") Medicine.Status status);
     
-    @Query("SELECT m FROM Medicine m WHERE " +
-           "LOWER(m.name) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
-           "LOWER(m.genericName) LIKE LOWER(CONCAT('%', :query, '%'))")
-    List<Medicine> searchByNameOrGenericName(@Param("query") String query);
+    /**
+     * Every medicine, whatever its status, paired with its inventory summary row (null when the
+     * medicine has no inventory), read through a server-side cursor in no particular order.
+     * Same consumption rules as {@link #streamWithInventorySummary}.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT m, s FROM Medicine m LEFT JOIN MedicineInventorySummary s ON s.medicineId = m.id")
+    Stream<Object[]> streamAllWithInventorySummary();
     
-    @Query("SELECT m FROM Medicine m WHERE " +
-           "m.status = :status AND " +
-           "(LOWER(m.name) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
-           "LOWER(m.genericName) LIKE LOWER(CONCAT('%', :query, '%')))")
-    List<Medicine> searchActiveByNameOrGenericName(@Param("query") String query, @Param("status") Medicine.Status status);
+    /**
+     * Current catalog version: the latest catalog_changes id (the last one pruned when none is
+     * left, so it never goes back). Change ids only become visible once the change has
+     * committed, and in commit order, so the version never runs ahead of the data a later
+     * read can see.
+     */
+    @Query(value = "SELECT GREATEST(COALESCE(MAX(id), 0), (SELECT pruned_through FROM catalog_change_watermark)) " +
+                   "FROM catalog_changes", nativeQuery = true)
+    Long getCatalogVersion();
     
-    List<Medicine> findByForm(Medicine.Form form);
-    
-    List<Medicine> findBySchedule(Medicine.Schedule schedule);
-    
-    List<Medicine> findByPrescriptionRequired(Boolean prescriptionRequired);
+    /**
+     * Units ordered per medicine since the given time, excluding cancelled and refunded orders.
+     */
+    @Query(value = "SELECT oi.medicine_id AS \"medicineId\", SUM(oi.quantity) AS \"unitsOrdered\" " +
+                   "FROM order_items oi JOIN orders o ON o.id = oi.order_id " +
+                   "WHERE o.created_at > :since AND o.status NOT IN ('CANCELLED', 'REFUNDED') " +
+                   "GROUP BY oi.medicine_id",
+           nativeQuery = true)
+    List<MedicinePopularity> getPopularitySince(@Param("since") LocalDateTime since);
 }
-
-
@@ -0,0 +1,87 @@
+package com.pharmacy.catalog.repository;
+
+import com.pharmacy.catalog.model.Medicine;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Composable predicates for catalog queries. Null arguments leave the query unrestricted,
+ * so any combination of search text and filters becomes a single SQL WHERE clause.
+ */
+public final class MedicineSpecifications {
+    
+    private MedicineSpecifications() {
+    }
+    
+    public static Specification<Medicine> hasStatus(Medicine.Status status) {
+        return (root, query, cb) -> status == null ? null : cb.equal(root.get("status"), status);
+    }
+    
+    /**
+     * Name, generic name or manufacturer contains the text (case-insensitive), the same
+     * fields the snapshot's search index covers.
+     */
+    public static Specification<Medicine> textContains(String text) {
+        return (root, query, cb) -> {
+            if (text == null || text.trim().isEmpty()) {
+                return null;
+            }
+            String pattern = "%" + text.trim().toLowerCase(Locale.ROOT) + "%";
+            return cb.or(
+                    cb.like(cb.lower(root.get("name")), pattern),
+                    cb.like(cb.lower(root.get("genericName")), pattern),
+                    cb.like(cb.lower(root.get("manufacturer")), pattern)
+            );
+        };
+    }
+    
+    public static Specification<Medicine> hasForm(Medicine.Form form) {
+        return (root, query, cb) -> form == null ? null : cb.equal(root.get("form"), form);
+    }
+    
+    public static Specification<Medicine> hasSchedule(Medicine.Schedule schedule) {
+        return (root, query, cb) -> schedule == null ? null : cb.equal(root.get("schedule"), schedule);
+    }
+    
+    public static Specification<Medicine> prescriptionRequired(Boolean prescriptionRequired) {
+        return (root, query, cb) -> prescriptionRequired == null
+                ? null
+                : cb.equal(root.get("prescriptionRequired"), prescriptionRequired);
+    }
+    
+    /**
+     * Keyset predicate: rows sorted strictly after (name, id) in (name, id) order.
+     */
+    public static Specification<Medicine> sortedAfter(String name, UUID id) {
+        return (root, query, cb) -> {
+            if (name == null || id == null) {
+                return null;
+            }
+            return cb.or(
+                    cb.greaterThan(root.get("name"), name),
+                    cb.and(
+                            cb.equal(root.get("name"), name),
+                            cb.greaterThan(root.<UUID>get("id"), id)
+                    )
+            );
+        };
+    }
+    
+    /**
+     * Active medicines matching the optional search text and filters.
+     */
+    public static Specification<Medicine> activeMatching(
+            String text,
+            Medicine.Form form,
+            Medicine.Schedule schedule,
+            Boolean prescriptionRequired
+    ) {
+        return Specification.where(hasStatus(Medicine.Status.ACTIVE))
+                .and(textContains(text))
+                .and(hasForm(form))
+                .and(hasSchedule(schedule))
+                .and(prescriptionRequired(prescriptionRequired));
+    }
+}
@@ -0,0 +1,125 @@
+package com.pharmacy.catalog.search;
+
+import com.pharmacy.catalog.dto.CatalogFacets;
+import com.pharmacy.catalog.dto.MedicineDto;
+import com.pharmacy.catalog.model.Medicine;
+
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable per-value bitsets over a list of medicines (bit i = medicines.get(i)) for the
+ * form, schedule and prescription-required facets. Counting a facet for a search result is
+ * an AND of the result bitset with each value's bitset followed by a popcount.
+ */
+public final class CatalogFacetIndex {
+
+    private final int size;
+    private final Map<Medicine.Form, BitSet> byForm;
+    private final Map<Medicine.Schedule, BitSet> bySchedule;
+    private final BitSet rxRequired;
+    private final BitSet rxNotRequired;
+
+    private CatalogFacetIndex(int size, Map<Medicine.Form, BitSet> byForm, Map<Medicine.Schedule, BitSet> bySchedule,
+                              BitSet rxRequired, BitSet rxNotRequired) {
+        this.size = size;
+        this.byForm = byForm;
+        this.bySchedule = bySchedule;
+        this.rxRequired = rxRequired;
+        this.rxNotRequired = rxNotRequired;
+    }
+
+    public static CatalogFacetIndex build(List<MedicineDto> medicines) {
+        Map<Medicine.Form, BitSet> byForm = new EnumMap<>(Medicine.Form.class);
+        Map<Medicine.Schedule, BitSet> bySchedule = new EnumMap<>(Medicine.Schedule.class);
+        BitSet required = new BitSet(medicines.size());
+        BitSet notRequired = new BitSet(medicines.size());
+
+        for (int i = 0; i < medicines.size(); i++) {
+            MedicineDto medicine = medicines.get(i);
+            if (medicine.getForm() != null) {
+                byForm.computeIfAbsent(medicine.getForm(), f -> new BitSet(medicines.size())).set(i);
+            }
+            if (medicine.getSchedule() != null) {
+                bySchedule.computeIfAbsent(medicine.getSchedule(), s -> new BitSet(medicines.size())).set(i);
+            }
+            if (Boolean.TRUE.equals(medicine.getPrescriptionRequired())) {
+                required.set(i);
+            } else if (Boolean.FALSE.equals(medicine.getPrescriptionRequired())) {
+                notRequired.set(i);
+            }
+        }
+        return new CatalogFacetIndex(medicines.size(), byForm, bySchedule, required, notRequired);
+    }
+
+    /**
+     * Facet counts within the base set (null means every medicine). Each facet is counted
+     * with the other facets' selections applied but not its own, so the counts show what
+     * switching that filter's value would return.
+     */
+    public CatalogFacets facets(
+            BitSet base,
+            Medicine.Form form,
+            Medicine.Schedule schedule,
+            Boolean prescriptionRequired
+    ) {
+        BitSet all = base != null ? base : allSet();
+        BitSet formSelection = form != null ? valueSet(byForm.get(form)) : null;
+        BitSet scheduleSelection = schedule != null ? valueSet(bySchedule.get(schedule)) : null;
+        BitSet rxSelection = prescriptionRequired != null ? rxSet(prescriptionRequired) : null;
+
+        Map<Medicine.Form, Integer> forms = new EnumMap<>(Medicine.Form.class);
+        BitSet formBase = and(all, scheduleSelection, rxSelection);
+        byForm.forEach((value, bits) -> forms.put(value, countAnd(formBase, bits)));
+
+        Map<Medicine.Schedule, Integer> schedules = new EnumMap<>(Medicine.Schedule.class);
+        BitSet scheduleBase = and(all, formSelection, rxSelection);
+        bySchedule.forEach((value, bits) -> schedules.put(value, countAnd(scheduleBase, bits)));
+
+        Map<Boolean, Integer> rx = new LinkedHashMap<>();
+        BitSet rxBase = and(all, formSelection, scheduleSelection);
+        rx.put(Boolean.TRUE, countAnd(rxBase, rxRequired));
+        rx.put(Boolean.FALSE, countAnd(rxBase, rxNotRequired));
+
+        return CatalogFacets.builder()
+                .total(and(formBase, formSelection, null).cardinality())
+                .forms(forms)
+                .schedules(schedules)
+                .prescriptionRequired(rx)
+                .build();
+    }
+
+    private BitSet rxSet(boolean required) {
+        return required ? rxRequired : rxNotRequired;
+    }
+
+    private BitSet allSet() {
+        BitSet all = new BitSet(size);
+        all.set(0, size);
+        return all;
+    }
+
+    private static BitSet valueSet(BitSet bits) {
+        return bits != null ? bits : new BitSet();
+    }
+
+    private static BitSet and(BitSet base, BitSet first, BitSet second) {
+        BitSet result = (BitSet) base.clone();
+        if (first != null) {
+            result.and(first);
+        }
+        if (second != null) {
+            result.and(second);
+        }
+        return result;
+    }
+
+    private static int countAnd(BitSet a, BitSet b) {
+        BitSet result = (BitSet) a.clone();
+        result.and(b);
+        return result.cardinality();
+    }
+}
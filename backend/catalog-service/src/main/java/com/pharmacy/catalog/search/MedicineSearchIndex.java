@@ -0,0 +1,642 @@
+package com.pharmacy.catalog.search;
+
+import com.pharmacy.catalog.snapshot.CatalogStore;
+import com.pharmacy.catalog.snapshot.StringDictionary;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable n-gram inverted index over medicine name, generic name and manufacturer.
+ * Every 1-, 2- and 3-character gram maps to a sorted list of document ordinals, so a
+ * substring query is answered by intersecting a handful of posting lists and verifying
+ * the few surviving candidates instead of scanning the whole catalog. Results are
+ * ordinals; the index keeps no reference to the medicines themselves.
+ * <p>
+ * Like the {@link CatalogStore}, the index holds no per-value String objects: normalized
+ * field values and their words live once in a {@link StringDictionary} and documents refer
+ * to them by code, grams are packed into longs, and posting lists share one int array.
+ */
+public final class MedicineSearchIndex {
+
+    private static final int MAX_GRAM = 3;
+
+    // Indexed fields, stored interleaved per document
+    private static final int NAME = 0;
+    private static final int GENERIC_NAME = 1;
+    private static final int MANUFACTURER = 2;
+    private static final int FIELDS = 3;
+
+    // Field weights used for ranking, higher is better
+    private static final int NAME_WEIGHT = 3;
+    private static final int GENERIC_NAME_WEIGHT = 2;
+    private static final int MANUFACTURER_WEIGHT = 1;
+    private static final int[] WEIGHTS = {NAME_WEIGHT, GENERIC_NAME_WEIGHT, MANUFACTURER_WEIGHT};
+
+    // Term code of the empty value (missing field)
+    private static final int EMPTY_TERM = 0;
+
+    // Candidate count from which match types are remembered per term while verifying
+    private static final int MEMO_MIN_CANDIDATES = 64;
+
+    private final int size;
+
+    // Normalized field values and their words
+    private final StringDictionary terms;
+
+    // Per document: term codes of name, generic name and manufacturer
+    private final int[] fieldTerms;
+
+    // Words of field value t: wordCodes[wordStart[t]] up to wordCodes[wordStart[t + 1]], used by fuzzy search
+    private final int[] wordStart;
+    private final int[] wordCodes;
+
+    // Packed grams, ascending; gram i's documents are postingDocs[postingStart[i]] up to postingStart[i + 1]
+    private final long[] grams;
+    private final int[] postingStart;
+    private final int[] postingDocs;
+
+    private MedicineSearchIndex(int size, StringDictionary terms, int[] fieldTerms, int[] wordStart,
+                                int[] wordCodes, long[] grams, int[] postingStart, int[] postingDocs) {
+        this.size = size;
+        this.terms = terms;
+        this.fieldTerms = fieldTerms;
+        this.wordStart = wordStart;
+        this.wordCodes = wordCodes;
+        this.grams = grams;
+        this.postingStart = postingStart;
+        this.postingDocs = postingDocs;
+    }
+
+    /**
+     * Indexes the active medicines of the store. Document ordinals are store rows, which is
+     * also the tie-break order for equally ranked results.
+     */
+    public static MedicineSearchIndex build(CatalogStore store) {
+        int size = store.activeCount();
+        StringDictionary strings = store.strings();
+        StringDictionary.Builder terms = new StringDictionary.Builder();
+        terms.add("");
+
+        // Normalize each distinct stored value once
+        int[] termOf = new int[strings.size()];
+        Arrays.fill(termOf, -1);
+        int[] fieldTerms = new int[size * FIELDS];
+        for (int doc = 0; doc < size; doc++) {
+            fieldTerms[doc * FIELDS + NAME] = term(store.nameCode(doc), strings, termOf, terms);
+            fieldTerms[doc * FIELDS + GENERIC_NAME] = term(store.genericNameCode(doc), strings, termOf, terms);
+            fieldTerms[doc * FIELDS + MANUFACTURER] = term(store.manufacturerCode(doc), strings, termOf, terms);
+        }
+
+        int fieldTermCount = terms.size();
+        int[] wordStart = new int[fieldTermCount + 1];
+        IntListBuilder wordCodes = new IntListBuilder();
+        long[][] termGrams = new long[fieldTermCount][];
+        for (int term = 0; term < fieldTermCount; term++) {
+            String value = terms.value(term);
+            wordStart[term] = wordCodes.size;
+            for (String word : tokenize(value)) {
+                wordCodes.add(terms.add(word));
+            }
+            termGrams[term] = grams(value);
+        }
+        wordStart[fieldTermCount] = wordCodes.size;
+
+        Map<Long, IntListBuilder> builders = new HashMap<>();
+        for (int doc = 0; doc < size; doc++) {
+            for (int field = 0; field < FIELDS; field++) {
+                for (long gram : termGrams[fieldTerms[doc * FIELDS + field]]) {
+                    builders.computeIfAbsent(gram, g -> new IntListBuilder()).addDistinct(doc);
+                }
+            }
+        }
+
+        long[] grams = new long[builders.size()];
+        int i = 0;
+        for (long gram : builders.keySet()) {
+            grams[i++] = gram;
+        }
+        Arrays.sort(grams);
+        int[] postingStart = new int[grams.length + 1];
+        IntListBuilder postingDocs = new IntListBuilder();
+        for (i = 0; i < grams.length; i++) {
+            postingStart[i] = postingDocs.size;
+            postingDocs.addAll(builders.get(grams[i]));
+        }
+        postingStart[grams.length] = postingDocs.size;
+
+        return new MedicineSearchIndex(size, terms.build(), fieldTerms, wordStart, wordCodes.toArray(),
+                grams, postingStart, postingDocs.toArray());
+    }
+
+    private static int term(int code, StringDictionary strings, int[] termOf, StringDictionary.Builder terms) {
+        if (code == StringDictionary.NULL_CODE) {
+            return EMPTY_TERM;
+        }
+        if (termOf[code] < 0) {
+            termOf[code] = terms.add(normalize(strings.get(code)));
+        }
+        return termOf[code];
+    }
+
+    // Every distinct 1-, 2- and 3-character gram of the text
+    private static long[] grams(String text) {
+        long[] result = new long[text.length() * MAX_GRAM];
+        int count = 0;
+        for (int length = 1; length <= MAX_GRAM; length++) {
+            for (int i = 0; i + length <= text.length(); i++) {
+                result[count++] = gram(text, i, length);
+            }
+        }
+        Arrays.sort(result, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || result[distinct - 1] != result[i]) {
+                result[distinct++] = result[i];
+            }
+        }
+        return Arrays.copyOf(result, distinct);
+    }
+
+    /**
+     * Gram of up to three characters packed as its length followed by 16 bits per character,
+     * so grams of different lengths never collide.
+     */
+    private static long gram(String text, int start, int length) {
+        long packed = length;
+        for (int i = start; i < start + length; i++) {
+            packed = (packed << 16) | text.charAt(i);
+        }
+        return packed;
+    }
+
+    // Index of the gram's posting list, or -1 if no document has it
+    private int postings(long gram) {
+        int index = Arrays.binarySearch(grams, gram);
+        return index >= 0 ? index : -1;
+    }
+
+    private int postingLength(int list) {
+        return postingStart[list + 1] - postingStart[list];
+    }
+
+    /**
+     * Ordinal of a matching medicine with its relevance score (higher is better).
+     */
+    public record Hit(int ordinal, int score) {
+    }
+
+    /**
+     * The medicines containing the query in any indexed field with their scores, best match first.
+     */
+    public List<Hit> searchHits(String query) {
+        long[] ranked = rankedMatches(query);
+        List<Hit> result = new ArrayList<>(ranked.length);
+        for (long packed : ranked) {
+            result.add(new Hit(unpackOrdinal(packed), unpackScore(packed)));
+        }
+        return result;
+    }
+
+    /**
+     * Ordinals (positions in the indexed list) of every medicine matching the query.
+     */
+    public BitSet matchSet(String query) {
+        BitSet result = new BitSet(size);
+        String needle = normalize(query);
+        if (needle.isEmpty()) {
+            return result;
+        }
+        byte[] needleBytes = needle.getBytes(StandardCharsets.UTF_8);
+        int[] candidates = candidates(needle);
+        int[] memo = memo(candidates.length);
+        for (int doc : candidates) {
+            if (score(doc, needleBytes, memo) > 0) {
+                result.set(doc);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Matches packed as (MAX_VALUE - score) << 32 | ordinal and sorted ascending,
+     * i.e. best score first and list order among equal scores.
+     */
+    private long[] rankedMatches(String query) {
+        String needle = normalize(query);
+        if (needle.isEmpty()) {
+            return new long[0];
+        }
+
+        byte[] needleBytes = needle.getBytes(StandardCharsets.UTF_8);
+        int[] candidates = candidates(needle);
+        int[] memo = memo(candidates.length);
+        long[] scored = new long[candidates.length];
+        int matches = 0;
+        for (int doc : candidates) {
+            int score = score(doc, needleBytes, memo);
+            if (score > 0) {
+                scored[matches++] = ((long) (Integer.MAX_VALUE - score) << 32) | doc;
+            }
+        }
+        Arrays.sort(scored, 0, matches);
+        return Arrays.copyOf(scored, matches);
+    }
+
+    /**
+     * Typo-tolerant search over name and generic name. Every query word must match a word of
+     * the same field within a bounded edit distance (0 edits up to 3 characters, 1 up to 5,
+     * 2 beyond), either as a whole word or as a prefix of one. Candidates come from the gram
+     * postings, most shared grams first, and are verified until the deadline (System.nanoTime)
+     * passes; at most maxResults hits are returned, fewest edits first.
+     */
+    public List<Hit> fuzzySearchHits(String query, int maxResults, long deadlineNanos) {
+        String[] queryTokens = tokenize(normalize(query));
+        if (queryTokens.length == 0 || maxResults <= 0) {
+            return Collections.emptyList();
+        }
+
+        long[] candidates = fuzzyCandidates(queryTokens);
+        // Words repeat across documents, so each is decoded at most once per query
+        String[] decoded = new String[terms.size()];
+        long[] scored = new long[candidates.length];
+        int matches = 0;
+        for (int i = 0; i < candidates.length; i++) {
+            if ((i & 31) == 0 && i > 0 && System.nanoTime() - deadlineNanos > 0) {
+                break;
+            }
+            int doc = unpackOrdinal(candidates[i]);
+            int score = Math.max(
+                    fuzzyFieldScore(words(doc, NAME, decoded), queryTokens, NAME_WEIGHT),
+                    fuzzyFieldScore(words(doc, GENERIC_NAME, decoded), queryTokens, GENERIC_NAME_WEIGHT));
+            if (score > 0) {
+                scored[matches++] = ((long) (Integer.MAX_VALUE - score) << 32) | doc;
+            }
+        }
+        Arrays.sort(scored, 0, matches);
+
+        List<Hit> result = new ArrayList<>(Math.min(matches, maxResults));
+        for (int i = 0; i < matches && i < maxResults; i++) {
+            result.add(new Hit(unpackOrdinal(scored[i]), unpackScore(scored[i])));
+        }
+        return result;
+    }
+
+    /**
+     * Documents that can still match, packed like ranked matches with the number of shared grams
+     * as the score. Words shorter than 9 characters use bigrams and longer ones trigrams, so the
+     * allowed edits never remove every gram of a word. Each edit removes at most q grams, which
+     * gives a lower bound on the grams a match must share (the q-gram lemma).
+     */
+    private long[] fuzzyCandidates(String[] queryTokens) {
+        LongSet queryGrams = new LongSet();
+        int destroyable = 0;
+        for (String token : queryTokens) {
+            int gramLength = token.length() <= 3 ? token.length() : token.length() < 9 ? 2 : MAX_GRAM;
+            for (int i = 0; i + gramLength <= token.length(); i++) {
+                queryGrams.add(gram(token, i, gramLength));
+            }
+            destroyable += maxEdits(token) * gramLength;
+        }
+        int minShared = Math.max(1, queryGrams.size - destroyable);
+
+        int[] shared = new int[size];
+        IntListBuilder touched = new IntListBuilder();
+        for (int g = 0; g < queryGrams.size; g++) {
+            int list = postings(queryGrams.values[g]);
+            if (list < 0) {
+                continue;
+            }
+            for (int p = postingStart[list]; p < postingStart[list + 1]; p++) {
+                int doc = postingDocs[p];
+                if (shared[doc]++ == 0) {
+                    touched.add(doc);
+                }
+            }
+        }
+
+        int[] docs = touched.toArray();
+        long[] candidates = new long[docs.length];
+        int count = 0;
+        for (int doc : docs) {
+            if (shared[doc] >= minShared) {
+                candidates[count++] = ((long) (Integer.MAX_VALUE - shared[doc]) << 32) | doc;
+            }
+        }
+        Arrays.sort(candidates, 0, count);
+        return Arrays.copyOf(candidates, count);
+    }
+
+    // Edits allowed for a query word: none up to 3 characters, 1 up to 5, 2 beyond
+    private static int maxEdits(String token) {
+        return token.length() <= 3 ? 0 : token.length() <= 5 ? 1 : 2;
+    }
+
+    /**
+     * Best score of the query words against one field, or 0 if some word has no match.
+     * Fewer total edits rank first, then the field weight, then whole-word over prefix matches.
+     */
+    private static int fuzzyFieldScore(String[] fieldTokens, String[] queryTokens, int weight) {
+        if (fieldTokens.length == 0) {
+            return 0;
+        }
+        int totalEdits = 0;
+        boolean allWhole = true;
+        for (String queryToken : queryTokens) {
+            int maxEdits = maxEdits(queryToken);
+            int best = Integer.MAX_VALUE;
+            boolean bestWhole = false;
+            for (String fieldToken : fieldTokens) {
+                long distances = prefixEditDistance(queryToken, fieldToken, maxEdits);
+                int whole = (int) (distances >>> 32);
+                int prefix = (int) distances;
+                if (whole < best || (whole == best && !bestWhole)) {
+                    best = whole;
+                    bestWhole = true;
+                }
+                if (prefix < best) {
+                    best = prefix;
+                    bestWhole = false;
+                }
+            }
+            if (best > maxEdits) {
+                return 0;
+            }
+            totalEdits += best;
+            allWhole &= bestWhole;
+        }
+        return (100 - totalEdits) * 10 + weight * 2 + (allWhole ? 1 : 0);
+    }
+
+    /**
+     * Optimal string alignment distance (insertions, deletions, substitutions and adjacent
+     * transpositions) from the query word to the whole field word, in the high 32 bits, and to
+     * the closest prefix of the field word, in the low 32 bits. Either is maxEdits + 1 when it
+     * exceeds maxEdits; rows stop early once every cell is over the bound.
+     */
+    private static long prefixEditDistance(String query, String field, int maxEdits) {
+        int over = maxEdits + 1;
+        // Every prefix of the field word is too short to come within maxEdits
+        if (query.length() - field.length() > maxEdits) {
+            return ((long) over << 32) | over;
+        }
+        int columns = field.length() + 1;
+        int[] previous2 = new int[columns];
+        int[] previous = new int[columns];
+        int[] current = new int[columns];
+        for (int j = 0; j < columns; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= query.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j < columns; j++) {
+                int cost = query.charAt(i - 1) == field.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && query.charAt(i - 1) == field.charAt(j - 2)
+                        && query.charAt(i - 2) == field.charAt(j - 1)) {
+                    value = Math.min(value, previous2[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > maxEdits) {
+                return ((long) over << 32) | over;
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+
+        int whole = Math.min(previous[columns - 1], over);
+        int prefix = over;
+        for (int j = 0; j < columns; j++) {
+            prefix = Math.min(prefix, previous[j]);
+        }
+        return ((long) whole << 32) | prefix;
+    }
+
+    private static String[] tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean letterOrDigit = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (letterOrDigit && start < 0) {
+                start = i;
+            } else if (!letterOrDigit && start >= 0) {
+                tokens.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    // Words of one field of the document, decoding each word into the per-query cache once
+    private String[] words(int doc, int field, String[] decoded) {
+        int term = fieldTerms[doc * FIELDS + field];
+        String[] words = new String[wordStart[term + 1] - wordStart[term]];
+        for (int i = 0; i < words.length; i++) {
+            int word = wordCodes[wordStart[term] + i];
+            if (decoded[word] == null) {
+                decoded[word] = terms.get(word);
+            }
+            words[i] = decoded[word];
+        }
+        return words;
+    }
+
+    private static int unpackOrdinal(long packed) {
+        return (int) packed;
+    }
+
+    private static int unpackScore(long packed) {
+        return Integer.MAX_VALUE - (int) (packed >>> 32);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int[] candidates(String needle) {
+        int gramLength = Math.min(MAX_GRAM, needle.length());
+        LongSet needleGrams = new LongSet();
+        for (int i = 0; i + gramLength <= needle.length(); i++) {
+            needleGrams.add(gram(needle, i, gramLength));
+        }
+
+        int[] lists = new int[needleGrams.size];
+        for (int g = 0; g < needleGrams.size; g++) {
+            lists[g] = postings(needleGrams.values[g]);
+            if (lists[g] < 0) {
+                return new int[0];
+            }
+        }
+        // Intersect shortest lists first so the working set shrinks quickly
+        int[] order = Arrays.stream(lists).boxed()
+                .sorted((a, b) -> Integer.compare(postingLength(a), postingLength(b)))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        int[] result = Arrays.copyOfRange(postingDocs, postingStart[order[0]], postingStart[order[0] + 1]);
+        for (int i = 1; i < order.length && result.length > 0; i++) {
+            result = intersect(result, postingDocs, postingStart[order[i]], postingStart[order[i] + 1]);
+        }
+        return result;
+    }
+
+    /**
+     * Per-term match types for verifying many candidates: field values such as generic names
+     * and manufacturers repeat across documents, so each is matched once per query. Entries
+     * hold match type + 1, 0 until computed; null when there are too few candidates to pay off.
+     */
+    private int[] memo(int candidates) {
+        return candidates >= MEMO_MIN_CANDIDATES ? new int[terms.size()] : null;
+    }
+
+    private int score(int doc, byte[] needle, int[] memo) {
+        int best = 0;
+        for (int field = 0; field < FIELDS; field++) {
+            int term = fieldTerms[doc * FIELDS + field];
+            if (term == EMPTY_TERM) {
+                continue;
+            }
+            int matchType;
+            if (memo == null) {
+                matchType = matchType(term, needle);
+            } else {
+                if (memo[term] == 0) {
+                    memo[term] = matchType(term, needle) + 1;
+                }
+                matchType = memo[term] - 1;
+            }
+            if (matchType > 0) {
+                best = Math.max(best, WEIGHTS[field] * 5 + matchType);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Exact match beats prefix, prefix beats word prefix, word prefix beats plain substring.
+     * Returns 0 when the term does not contain the needle. Matches the UTF-8 bytes of the
+     * term in place, so verifying a candidate creates no strings.
+     */
+    private int matchType(int term, byte[] needle) {
+        int index = terms.indexOf(term, needle, 0);
+        if (index < 0) {
+            return 0;
+        }
+        if (terms.byteLength(term) == needle.length) {
+            return 4;
+        }
+        if (index == 0) {
+            return 3;
+        }
+        if (isWordStart(term, index) || nextWordStart(term, needle, index) >= 0) {
+            return 2;
+        }
+        return 1;
+    }
+
+    private int nextWordStart(int term, byte[] needle, int from) {
+        int index = terms.indexOf(term, needle, from + 1);
+        while (index >= 0) {
+            if (isWordStart(term, index)) {
+                return index;
+            }
+            index = terms.indexOf(term, needle, index + 1);
+        }
+        return -1;
+    }
+
+    private boolean isWordStart(int term, int index) {
+        return index == 0 || !Character.isLetterOrDigit(terms.codePointBefore(term, index));
+    }
+
+    // Intersection of a sorted array with the sorted range b[from..to)
+    private static int[] intersect(int[] a, int[] b, int from, int to) {
+        int[] result = new int[Math.min(a.length, to - from)];
+        int i = 0, j = from, k = 0;
+        while (i < a.length && j < to) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[k++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, k);
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Growable int array; documents are indexed in ascending order so duplicates are always adjacent.
+     */
+    private static final class IntListBuilder {
+        private int[] values = new int[4];
+        private int size;
+
+        void addDistinct(int value) {
+            if (size > 0 && values[size - 1] == value) {
+                return;
+            }
+            add(value);
+        }
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(IntListBuilder other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, size + other.size));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * Insertion-ordered set of the few packed grams of a query.
+     */
+    private static final class LongSet {
+        private long[] values = new long[8];
+        private int size;
+
+        void add(long value) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    return;
+                }
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.pharmacy.catalog.search;
+
+import com.pharmacy.catalog.dto.MedicineDto;
+import com.pharmacy.catalog.model.Medicine;
+import com.pharmacy.catalog.snapshot.CatalogStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Groups medicines into therapeutic equivalence classes: same normalized generic name,
+ * strength and form (ordinal = store row). Only classes with at least two members are kept,
+ * since a medicine alone in its class has no substitutes.
+ * <p>
+ * Classes are found by a 64-bit hash of their key in a sorted array, and members are read
+ * back from the {@link CatalogStore}, so no key strings stay on the heap; lookups re-check
+ * the key of each member, which keeps results exact even if two keys share a hash.
+ */
+public final class SubstitutionIndex {
+
+    private static final int[] NONE = new int[0];
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern TRAILING_ZEROS = Pattern.compile("(\\d)\\.0+(?!\\d)");
+
+    private final CatalogStore store;
+    private final int groupCount;
+
+    // Key hashes, ascending; the members of hash i are members[memberStart[i]] up to memberStart[i + 1]
+    private final long[] hashes;
+    private final int[] memberStart;
+    private final int[] members;
+
+    private SubstitutionIndex(CatalogStore store, int groupCount, long[] hashes, int[] memberStart, int[] members) {
+        this.store = store;
+        this.groupCount = groupCount;
+        this.hashes = hashes;
+        this.memberStart = memberStart;
+        this.members = members;
+    }
+
+    /**
+     * Indexes the active medicines of the store.
+     */
+    public static SubstitutionIndex build(CatalogStore store) {
+        Map<String, List<Integer>> classes = new HashMap<>();
+        for (int row = 0; row < store.activeCount(); row++) {
+            String key = key(store.genericName(row), store.strength(row), store.form(row));
+            if (key != null) {
+                classes.computeIfAbsent(key, k -> new ArrayList<>(2)).add(row);
+            }
+        }
+
+        // Classes whose keys share a hash are merged here and told apart again on lookup
+        Map<Long, List<Integer>> byHash = new HashMap<>();
+        int groupCount = 0;
+        for (Map.Entry<String, List<Integer>> entry : classes.entrySet()) {
+            if (entry.getValue().size() > 1) {
+                byHash.computeIfAbsent(hash(entry.getKey()), h -> new ArrayList<>()).addAll(entry.getValue());
+                groupCount++;
+            }
+        }
+
+        long[] hashes = byHash.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        int[] memberStart = new int[hashes.length + 1];
+        int[] members = new int[byHash.values().stream().mapToInt(List::size).sum()];
+        int count = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            memberStart[i] = count;
+            int[] rows = byHash.get(hashes[i]).stream().mapToInt(Integer::intValue).sorted().toArray();
+            System.arraycopy(rows, 0, members, count, rows.length);
+            count += rows.length;
+        }
+        memberStart[hashes.length] = count;
+        return new SubstitutionIndex(store, groupCount, hashes, memberStart, members);
+    }
+
+    /**
+     * Ordinals equivalent to the medicine, ascending (the medicine itself included if it is
+     * indexed). The medicine does not have to be indexed, only its key fields are used.
+     */
+    public int[] equivalents(MedicineDto medicine) {
+        String key = key(medicine.getGenericName(), medicine.getStrength(), medicine.getForm());
+        if (key == null) {
+            return NONE;
+        }
+        int index = Arrays.binarySearch(hashes, hash(key));
+        if (index < 0) {
+            return NONE;
+        }
+
+        int[] result = new int[memberStart[index + 1] - memberStart[index]];
+        int count = 0;
+        for (int i = memberStart[index]; i < memberStart[index + 1]; i++) {
+            int row = members[i];
+            if (key.equals(key(store.genericName(row), store.strength(row), store.form(row)))) {
+                result[count++] = row;
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    public int groupCount() {
+        return groupCount;
+    }
+
+    /**
+     * Equivalence key, or null when generic name, strength or form is missing. Generic names
+     * compare case-, punctuation- and word-order-insensitively (so combinations match in any
+     * order); strengths ignore case and spacing, "µg" is read as "mcg" and "500.0" as "500".
+     */
+    static String key(String genericName, String strength, Medicine.Form form) {
+        String normalizedGeneric = normalizeGenericName(genericName);
+        String normalizedStrength = normalizeStrength(strength);
+        if (normalizedGeneric == null || normalizedStrength == null || form == null) {
+            return null;
+        }
+        return normalizedGeneric + '|' + normalizedStrength + '|' + form.name();
+    }
+
+    // 64-bit FNV-1a over the key's characters
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static String normalizeGenericName(String genericName) {
+        if (genericName == null) {
+            return null;
+        }
+        String[] words = NON_ALPHANUMERIC.split(genericName.toLowerCase(Locale.ROOT));
+        String[] kept = Arrays.stream(words)
+                .filter(word -> !word.isEmpty() && !word.equals("and"))
+                .sorted()
+                .toArray(String[]::new);
+        return kept.length > 0 ? String.join(" ", kept) : null;
+    }
+
+    private static String normalizeStrength(String strength) {
+        if (strength == null) {
+            return null;
+        }
+        String normalized = WHITESPACE.matcher(strength.toLowerCase(Locale.ROOT)).replaceAll("")
+                .replace("µg", "mcg")
+                .replace("μg", "mcg");
+        normalized = TRAILING_ZEROS.matcher(normalized).replaceAll("$1");
+        return normalized.isEmpty() ? null : normalized;
+    }
+}
@@ -0,0 +1,297 @@
+package com.pharmacy.catalog.search;
+
+import com.pharmacy.catalog.dto.SuggestionDto;
+import com.pharmacy.catalog.snapshot.CatalogStore;
+import com.pharmacy.catalog.snapshot.StringDictionary;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Immutable prefix trie for typeahead over medicine names, generic names and
+ * "generic name + strength". Each suggestion is reachable from the start of every word
+ * in its text, and every node stores the ordinals of its best {@link #MAX_SUGGESTIONS}
+ * suggestions, so a lookup is a walk of the prefix plus a copy of at most K entries.
+ * <p>
+ * Suggestion texts are kept in a {@link StringDictionary} and nodes are flattened into
+ * arrays (numbered breadth-first, so a node's children are consecutive), so the trie holds
+ * no per-node or per-suggestion objects; DTOs are built for the returned suggestions only.
+ */
+public final class SuggestionTrie {
+
+    public static final int MAX_SUGGESTIONS = 10;
+
+    private static final SuggestionDto.Type[] TYPES = SuggestionDto.Type.values();
+
+    private final CatalogStore store;
+
+    // Per suggestion ordinal: text code, type, store row of a MEDICINE suggestion (else -1), in stock
+    private final StringDictionary texts;
+    private final int[] textCodes;
+    private final byte[] types;
+    private final int[] rows;
+    private final boolean[] inStock;
+
+    // Children of node n are nodes firstChild[n] .. firstChild[n + 1] - 1, keyed by keys[child - 1]
+    private final int[] firstChild;
+    private final char[] keys;
+
+    // Best suggestions of node n: top[topStart[n]] up to top[topStart[n + 1]], best first
+    private final int[] topStart;
+    private final int[] top;
+
+    private SuggestionTrie(CatalogStore store, StringDictionary texts, int[] textCodes, byte[] types, int[] rows,
+                           boolean[] inStock, int[] firstChild, char[] keys, int[] topStart, int[] top) {
+        this.store = store;
+        this.texts = texts;
+        this.textCodes = textCodes;
+        this.types = types;
+        this.rows = rows;
+        this.inStock = inStock;
+        this.firstChild = firstChild;
+        this.keys = keys;
+        this.topStart = topStart;
+        this.top = top;
+    }
+
+    /**
+     * Builds the trie from the active medicines of the store. In-stock suggestions always
+     * rank above out-of-stock ones; within each group higher popularity (units ordered) wins,
+     * then shorter and alphabetically earlier text.
+     */
+    public static SuggestionTrie build(CatalogStore store, Map<UUID, Long> popularity) {
+        Map<String, Candidate> candidates = new LinkedHashMap<>();
+        for (int row = 0; row < store.activeCount(); row++) {
+            boolean inStock = Boolean.TRUE.equals(store.inStock(row));
+            long units = popularity.getOrDefault(store.id(row), 0L);
+
+            String name = store.name(row);
+            if (name != null && !name.isBlank()) {
+                // Medicine suggestions are keyed by row so that equally named products stay distinct
+                candidates.put("M:" + row,
+                        new Candidate(name.trim(), SuggestionDto.Type.MEDICINE, row, inStock, units));
+            }
+            String genericName = store.genericName(row);
+            if (genericName != null && !genericName.isBlank()) {
+                String generic = genericName.trim();
+                merge(candidates, generic, SuggestionDto.Type.GENERIC, inStock, units);
+                String strength = store.strength(row);
+                if (strength != null && !strength.isBlank()) {
+                    merge(candidates, generic + " " + strength.trim(),
+                            SuggestionDto.Type.GENERIC_STRENGTH, inStock, units);
+                }
+            }
+        }
+
+        // Global rank: ordinal order is best-first, so per-node lists only need ordinal order
+        List<Candidate> ranked = new ArrayList<>(candidates.values());
+        ranked.sort(Comparator
+                .comparing((Candidate c) -> !c.inStock)
+                .thenComparing(c -> -c.units)
+                .thenComparingInt(c -> c.text.length())
+                .thenComparing(c -> c.text));
+
+        int count = ranked.size();
+        StringDictionary.Builder texts = new StringDictionary.Builder();
+        int[] textCodes = new int[count];
+        byte[] types = new byte[count];
+        int[] rows = new int[count];
+        boolean[] inStock = new boolean[count];
+        BuildNode root = new BuildNode();
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            Candidate candidate = ranked.get(ordinal);
+            textCodes[ordinal] = texts.add(candidate.text);
+            types[ordinal] = (byte) candidate.type.ordinal();
+            rows[ordinal] = candidate.row;
+            inStock[ordinal] = candidate.inStock;
+            String key = MedicineSearchIndex.normalize(candidate.text);
+            for (int start = 0; start < key.length(); start++) {
+                if (start == 0 || !Character.isLetterOrDigit(key.charAt(start - 1))) {
+                    root.insert(key, start, ordinal);
+                }
+            }
+        }
+        root.computeTop();
+        return flatten(store, texts.build(), textCodes, types, rows, inStock, root);
+    }
+
+    /**
+     * Best suggestions whose text (or one of its words) starts with the prefix.
+     */
+    public List<SuggestionDto> suggest(String prefix, int limit) {
+        String key = MedicineSearchIndex.normalize(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        int node = 0;
+        for (int i = 0; i < key.length() && node >= 0; i++) {
+            node = child(node, key.charAt(i));
+        }
+        if (node < 0) {
+            return Collections.emptyList();
+        }
+
+        int count = Math.min(limit, topStart[node + 1] - topStart[node]);
+        List<SuggestionDto> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(toDto(top[topStart[node] + i]));
+        }
+        return result;
+    }
+
+    public int size() {
+        return textCodes.length;
+    }
+
+    private int child(int node, char c) {
+        // Node n's children are keyed by keys[firstChild[n] - 1 ..], sorted
+        int index = Arrays.binarySearch(keys, firstChild[node] - 1, firstChild[node + 1] - 1, c);
+        return index >= 0 ? index + 1 : -1;
+    }
+
+    private SuggestionDto toDto(int ordinal) {
+        return SuggestionDto.builder()
+                .text(texts.get(textCodes[ordinal]))
+                .type(TYPES[types[ordinal]])
+                .medicineId(rows[ordinal] >= 0 ? store.id(rows[ordinal]) : null)
+                .inStock(inStock[ordinal])
+                .build();
+    }
+
+    private static void merge(Map<String, Candidate> candidates, String text, SuggestionDto.Type type,
+                              boolean inStock, long units) {
+        String key = type + ":" + MedicineSearchIndex.normalize(text);
+        Candidate existing = candidates.get(key);
+        if (existing == null) {
+            candidates.put(key, new Candidate(text, type, -1, inStock, units));
+        } else {
+            existing.inStock |= inStock;
+            existing.units += units;
+        }
+    }
+
+    /**
+     * Numbers the nodes breadth-first, which makes each node's children a consecutive range
+     * whose keys (in sorted order) are stored once, at the child's number minus one.
+     */
+    private static SuggestionTrie flatten(CatalogStore store, StringDictionary texts, int[] textCodes, byte[] types,
+                                          int[] rows, boolean[] inStock, BuildNode root) {
+        List<BuildNode> nodes = new ArrayList<>();
+        List<Character> keys = new ArrayList<>();
+        Deque<BuildNode> queue = new ArrayDeque<>();
+        nodes.add(root);
+        queue.add(root);
+        int[] firstChildOf = new int[1];
+        int next = 1;
+        int index = 0;
+        while (!queue.isEmpty()) {
+            BuildNode node = queue.poll();
+            if (index == firstChildOf.length) {
+                firstChildOf = Arrays.copyOf(firstChildOf, index * 2);
+            }
+            firstChildOf[index++] = next;
+            for (Map.Entry<Character, BuildNode> entry : node.children.entrySet()) {
+                keys.add(entry.getKey());
+                nodes.add(entry.getValue());
+                queue.add(entry.getValue());
+                next++;
+            }
+        }
+
+        int nodeCount = nodes.size();
+        int[] firstChild = Arrays.copyOf(firstChildOf, nodeCount + 1);
+        firstChild[nodeCount] = nodeCount;
+        char[] keyArray = new char[keys.size()];
+        for (int i = 0; i < keyArray.length; i++) {
+            keyArray[i] = keys.get(i);
+        }
+
+        int[] topStart = new int[nodeCount + 1];
+        int total = 0;
+        for (int n = 0; n < nodeCount; n++) {
+            topStart[n] = total;
+            total += nodes.get(n).top.length;
+        }
+        topStart[nodeCount] = total;
+        int[] top = new int[total];
+        for (int n = 0; n < nodeCount; n++) {
+            int[] nodeTop = nodes.get(n).top;
+            System.arraycopy(nodeTop, 0, top, topStart[n], nodeTop.length);
+        }
+        return new SuggestionTrie(store, texts, textCodes, types, rows, inStock, firstChild, keyArray, topStart, top);
+    }
+
+    private static final class Candidate {
+        private final String text;
+        private final SuggestionDto.Type type;
+        private final int row;
+        private boolean inStock;
+        private long units;
+
+        private Candidate(String text, SuggestionDto.Type type, int row, boolean inStock, long units) {
+            this.text = text;
+            this.type = type;
+            this.row = row;
+            this.inStock = inStock;
+            this.units = units;
+        }
+    }
+
+    private static final class BuildNode {
+        private final TreeMap<Character, BuildNode> children = new TreeMap<>();
+        private final List<Integer> terminals = new ArrayList<>(1);
+        private int[] top;
+
+        private void insert(String key, int start, int ordinal) {
+            BuildNode node = this;
+            for (int i = start; i < key.length(); i++) {
+                node = node.children.computeIfAbsent(key.charAt(i), c -> new BuildNode());
+            }
+            if (!node.terminals.contains(ordinal)) {
+                node.terminals.add(ordinal);
+            }
+        }
+
+        // Post-order: a node's top-K is the K smallest ordinals among its terminals and children's top-K
+        private void computeTop() {
+            int[] merged = terminals.stream().mapToInt(Integer::intValue).toArray();
+            for (BuildNode child : children.values()) {
+                child.computeTop();
+                merged = mergeTop(merged, child.top);
+            }
+            top = merged;
+        }
+
+        private static int[] mergeTop(int[] a, int[] b) {
+            int[] sortedA = a.clone();
+            Arrays.sort(sortedA);
+            int[] result = new int[Math.min(MAX_SUGGESTIONS, sortedA.length + b.length)];
+            int i = 0, j = 0, k = 0;
+            while (k < result.length && (i < sortedA.length || j < b.length)) {
+                int next;
+                if (j >= b.length || (i < sortedA.length && sortedA[i] < b[j])) {
+                    next = sortedA[i++];
+                } else if (i < sortedA.length && sortedA[i] == b[j]) {
+                    next = sortedA[i++];
+                    j++;
+                } else {
+                    next = b[j++];
+                }
+                if (k == 0 || result[k - 1] != next) {
+                    result[k++] = next;
+                }
+            }
+            return Arrays.copyOf(result, k);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.pharmacy.catalog.service;
+
+import com.pharmacy.catalog.dto.CatalogChangeDto;
+import com.pharmacy.catalog.dto.CatalogChangesPage;
+import com.pharmacy.catalog.model.CatalogChange;
+import com.pharmacy.catalog.repository.CatalogChangeRepository;
+import com.pharmacy.common.exception.PharmacyException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Delta sync over the catalog_changes log. A token is the id of the last change a consumer
+ * has applied; because ids are assigned in commit order, reading everything after it never
+ * skips a change that commits later.
+ * <p>
+ * Triggers only queue changes; they are published into the log here, by one publisher at a
+ * time, so the writers of medicines and inventory never wait on each other for the feed.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogChangeService {
+    
+    private final CatalogChangeRepository changeRepository;
+    
+    @Value("${catalog.changes.default-size:500}")
+    private int defaultBatchSize;
+    
+    @Value("${catalog.changes.max-size:1000}")
+    private int maxBatchSize;
+    
+    @Value("${catalog.changes.retention-days:30}")
+    private int retentionDays;
+    
+    @Value("${catalog.changes.publish-batch-size:5000}")
+    private int publishBatchSize;
+    
+    /**
+     * Changes committed after the token, oldest first. Without a token nothing is returned and
+     * nextToken is the current head: take it before a full pull, then sync from it.
+     */
+    @Transactional(readOnly = true)
+    public CatalogChangesPage getChangesSince(String since, Integer limit) {
+        int batchSize = limit != null ? limit : defaultBatchSize;
+        if (batchSize < 1 || batchSize > maxBatchSize) {
+            throw new PharmacyException("limit must be between 1 and " + maxBatchSize,
+                    HttpStatus.BAD_REQUEST, "INVALID_LIMIT");
+        }
+        
+        long head = changeRepository.findHeadId();
+        if (since == null || since.isBlank()) {
+            return CatalogChangesPage.builder()
+                    .changes(List.of())
+                    .nextToken(String.valueOf(head))
+                    .hasMore(false)
+                    .build();
+        }
+        
+        long after = parseToken(since);
+        if (after > head) {
+            // Tokens are only ever handed out up to the head
+            throw new PharmacyException("Sync token is ahead of the catalog change feed",
+                    HttpStatus.BAD_REQUEST, "INVALID_TOKEN");
+        }
+        
+        // One extra row tells whether another batch is waiting
+        List<CatalogChange> rows = changeRepository.findByIdGreaterThanOrderByIdAsc(
+                after, PageRequest.of(0, batchSize + 1));
+        
+        // Checked after the read: a prune that removed rows from under it has raised the
+        // watermark by now, even if it left the feed empty
+        if (after < changeRepository.findPrunedThroughId()) {
+            // Changes right after the token have been pruned; the consumer must re-pull the catalog
+            throw new PharmacyException("Sync token has expired, re-sync the full catalog",
+                    HttpStatus.GONE, "SYNC_TOKEN_EXPIRED");
+        }
+        boolean hasMore = rows.size() > batchSize;
+        if (hasMore) {
+            rows = rows.subList(0, batchSize);
+        }
+        
+        List<CatalogChangeDto> changes = rows.stream()
+                .map(this::convertToDto)
+                .collect(Collectors.toList());
+        String nextToken = rows.isEmpty() ? String.valueOf(after) : String.valueOf(rows.get(rows.size() - 1).getId());
+        return CatalogChangesPage.builder()
+                .changes(changes)
+                .nextToken(nextToken)
+                .hasMore(hasMore)
+                .build();
+    }
+    
+    @Scheduled(fixedDelayString = "${catalog.changes.publish-interval-ms:500}")
+    public void publishQueuedChanges() {
+        try {
+            int published;
+            do {
+                published = changeRepository.publishQueued(publishBatchSize);
+                if (published > 0) {
+                    log.debug("Published {} catalog changes", published);
+                }
+            } while (published == publishBatchSize);
+        } catch (Exception e) {
+            log.error("Error publishing catalog changes", e);
+        }
+    }
+    
+    @Scheduled(cron = "${catalog.changes.prune-cron:0 30 3 * * *}")
+    public void pruneOldChanges() {
+        try {
+            int deleted = changeRepository.pruneChangedBefore(LocalDateTime.now().minusDays(retentionDays));
+            log.info("Pruned {} catalog changes older than {} days", deleted, retentionDays);
+        } catch (Exception e) {
+            log.error("Error pruning catalog changes", e);
+        }
+    }
+    
+    private long parseToken(String token) {
+        try {
+            long value = Long.parseLong(token.trim());
+            if (value >= 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        throw new PharmacyException("Invalid sync token", HttpStatus.BAD_REQUEST, "INVALID_TOKEN");
+    }
+    
+    private CatalogChangeDto convertToDto(CatalogChange change) {
+        return CatalogChangeDto.builder()
+                .token(String.valueOf(change.getId()))
+                .medicineId(change.getMedicineId())
+                .entity(change.getEntity())
+                .changeType(change.getChangeType())
+                .changedAt(change.getChangedAt())
+                .build();
+    }
+}
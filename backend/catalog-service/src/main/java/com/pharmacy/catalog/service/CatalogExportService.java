@@ -0,0 +1,134 @@
+package com.pharmacy.catalog.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pharmacy.catalog.dto.MedicineDto;
+import com.pharmacy.catalog.model.Medicine;
+import com.pharmacy.catalog.model.MedicineInventorySummary;
+import com.pharmacy.catalog.repository.MedicineRepository;
+import com.pharmacy.common.exception.PharmacyException;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes the active catalog row by row from a database cursor, so memory use does not
+ * grow with the number of medicines. Each row is detached from the persistence context
+ * as soon as it has been written.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogExportService {
+    
+    private static final String[] CSV_HEADER = {
+            "id", "name", "genericName", "manufacturer", "strength", "form", "prescriptionRequired",
+            "schedule", "status", "totalStock", "minPrice", "minMrp", "maxDiscount", "inStock", "updatedAt"
+    };
+    
+    private final MedicineRepository medicineRepository;
+    private final CatalogService catalogService;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    
+    public enum Format {
+        NDJSON, CSV;
+        
+        public static Format from(String value) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(value)) {
+                    return format;
+                }
+            }
+            throw new PharmacyException("Unsupported export format: " + value, HttpStatus.BAD_REQUEST, "INVALID_FORMAT");
+        }
+    }
+    
+    @Transactional(readOnly = true)
+    public int export(Format format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (format == Format.CSV) {
+            writeCsvRow(writer, CSV_HEADER);
+        }
+        
+        int rows = 0;
+        try (Stream<Object[]> stream = medicineRepository.streamWithInventorySummary(Medicine.Status.ACTIVE)) {
+            Iterator<Object[]> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                Object[] row = iterator.next();
+                Medicine medicine = (Medicine) row[0];
+                MedicineInventorySummary summary = (MedicineInventorySummary) row[1];
+                MedicineDto dto = catalogService.convertToDto(medicine, summary);
+                
+                if (format == Format.CSV) {
+                    writeCsvRow(writer, toCsvFields(dto));
+                } else {
+                    writer.write(objectMapper.writeValueAsString(dto));
+                    writer.write('\n');
+                }
+                
+                entityManager.detach(medicine);
+                if (summary != null) {
+                    entityManager.detach(summary);
+                }
+                rows++;
+            }
+        }
+        writer.flush();
+        log.info("Exported {} medicines as {}", rows, format);
+        return rows;
+    }
+    
+    private static String[] toCsvFields(MedicineDto dto) {
+        return new String[] {
+                String.valueOf(dto.getId()),
+                dto.getName(),
+                dto.getGenericName(),
+                dto.getManufacturer(),
+                dto.getStrength(),
+                dto.getForm() != null ? dto.getForm().name() : null,
+                String.valueOf(dto.getPrescriptionRequired()),
+                dto.getSchedule() != null ? dto.getSchedule().name() : null,
+                dto.getStatus() != null ? dto.getStatus().name() : null,
+                String.valueOf(dto.getTotalStock()),
+                dto.getMinPrice().toPlainString(),
+                dto.getMinMrp().toPlainString(),
+                dto.getMaxDiscount().toPlainString(),
+                String.valueOf(dto.getInStock()),
+                dto.getUpdatedAt() != null ? dto.getUpdatedAt().toString() : null
+        };
+    }
+    
+    // RFC 4180: quote fields containing separators, quotes or line breaks, doubling embedded quotes
+    private static void writeCsvRow(Writer writer, String[] fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String field = fields[i];
+            if (field == null) {
+                continue;
+            }
+            if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0
+                    || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(field.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(field);
+            }
+        }
+        writer.write("\r\n");
+    }
+}
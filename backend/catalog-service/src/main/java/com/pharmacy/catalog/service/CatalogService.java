@@ -1,20 +1,39 @@
 package com.pharmacy.catalog.service;
 
+import com.pharmacy.catalog.dto.CatalogCursor;
+import com.pharmacy.catalog.dto.CursorPage;
+import com.pharmacy.catalog.dto.InventorySummary;
 import com.pharmacy.catalog.dto.MedicineDto;
+import com.pharmacy.catalog.dto.MedicinePopularity;
 import com.pharmacy.catalog.model.Medicine;
-import com.pharmacy.catalog.model.MedicineInventory;
-import com.pharmacy.catalog.repository.MedicineInventoryRepository;
+import com.pharmacy.catalog.model.MedicineInventorySummary;
+import com.pharmacy.catalog.repository.MedicineInventorySummaryRepository;
 import com.pharmacy.catalog.repository.MedicineRepository;
+import com.pharmacy.catalog.repository.MedicineSpecifications;
+import com.pharmacy.catalog.snapshot.CatalogSnapshot;
+import com.pharmacy.catalog.snapshot.CatalogStore;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.time.LocalDate;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -22,120 +41,164 @@ import java.util.stream.Collectors;
 public class CatalogService {
     
     private final MedicineRepository medicineRepository;
-    private final MedicineInventoryRepository inventoryRepository;
+    private final MedicineInventorySummaryRepository inventorySummaryRepository;
     
-    @Transactional(readOnly = true)
-    public List<MedicineDto> getAllMedicines() {
-        List<Medicine> medicines = medicineRepository.findByStatus(Medicine.Status.ACTIVE);
-        return medicines.stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
-    }
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Value("${catalog.suggest.popularity-days:90}")
+    private int popularityDays;
     
     @Transactional(readOnly = true)
     public MedicineDto getMedicineById(UUID id) {
         Medicine medicine = medicineRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Medicine not found with id: " + id));
-        return convertToDto(medicine);
+        return convertToDtos(List.of(medicine)).get(0);
     }
     
+    /**
+     * Medicines with the given ids in any status, in no particular order. Unknown ids are skipped.
+     */
     @Transactional(readOnly = true)
-    public List<MedicineDto> searchMedicines(String query) {
-        List<Medicine> medicines = medicineRepository.searchActiveByNameOrGenericName(
-                query, 
-                Medicine.Status.ACTIVE
-        );
-        return medicines.stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+    public List<MedicineDto> getMedicinesByIds(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return convertToDtos(medicineRepository.findAllById(ids));
     }
     
+    /**
+     * Every active medicine matching the optional search text and filters, in (name, id)
+     * order. Used to compute facets while no snapshot has been built.
+     */
     @Transactional(readOnly = true)
-    public List<MedicineDto> filterMedicines(
+    public List<MedicineDto> searchAndFilterMedicines(
+            String query,
             Medicine.Form form,
             Medicine.Schedule schedule,
             Boolean prescriptionRequired
     ) {
-        List<Medicine> medicines = medicineRepository.findByStatus(Medicine.Status.ACTIVE);
-        
-        // Apply filters
-        if (form != null) {
-            medicines = medicines.stream()
-                    .filter(m -> m.getForm() == form)
-                    .collect(Collectors.toList());
-        }
-        
-        if (schedule != null) {
-            medicines = medicines.stream()
-                    .filter(m -> m.getSchedule() == schedule)
-                    .collect(Collectors.toList());
-        }
-        
-        if (prescriptionRequired != null) {
-            medicines = medicines.stream()
-                    .filter(m -> m.getPrescriptionRequired().equals(prescriptionRequired))
-                    .collect(Collectors.toList());
-        }
-        
-        return medicines.stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        // Search text and filters are combined into one WHERE clause
+        List<Medicine> medicines = medicineRepository.findAll(
+                MedicineSpecifications.activeMatching(query, form, schedule, prescriptionRequired),
+                Sort.by("name", "id")
+        );
+        return convertToDtos(medicines);
     }
     
+    /**
+     * One keyset page of active medicines ordered by (name, id). Fetches one extra row to
+     * detect whether another page exists, so no count query is needed.
+     */
     @Transactional(readOnly = true)
-    public List<MedicineDto> searchAndFilterMedicines(
+    public CursorPage<MedicineDto> pageMedicines(
             String query,
             Medicine.Form form,
             Medicine.Schedule schedule,
-            Boolean prescriptionRequired
+            Boolean prescriptionRequired,
+            CatalogCursor after,
+            int limit
     ) {
-        List<Medicine> medicines;
-        
-        if (query != null && !query.trim().isEmpty()) {
-            medicines = medicineRepository.searchActiveByNameOrGenericName(query, Medicine.Status.ACTIVE);
-        } else {
-            medicines = medicineRepository.findByStatus(Medicine.Status.ACTIVE);
+        Specification<Medicine> spec = MedicineSpecifications.activeMatching(query, form, schedule, prescriptionRequired);
+        if (after != null) {
+            after.requireOrdering(CatalogCursor.Ordering.DATABASE);
+            spec = spec.and(MedicineSpecifications.sortedAfter(after.name(), after.id()));
         }
+        List<Medicine> medicines = medicineRepository.findBy(spec, q -> q
+                .sortBy(Sort.by("name", "id"))
+                .limit(limit + 1)
+                .all());
         
-        // Apply filters
-        if (form != null) {
-            medicines = medicines.stream()
-                    .filter(m -> m.getForm() == form)
-                    .collect(Collectors.toList());
+        boolean hasMore = medicines.size() > limit;
+        if (hasMore) {
+            medicines = medicines.subList(0, limit);
         }
+        List<MedicineDto> items = convertToDtos(medicines);
+        
+        return CursorPage.<MedicineDto>builder()
+                .items(items)
+                .nextCursor(hasMore ? CatalogCursor.of(CatalogCursor.Ordering.DATABASE, items.get(items.size() - 1), 0).encode() : null)
+                .hasMore(hasMore)
+                .limit(limit)
+                .build();
+    }
+    
+    @Transactional(readOnly = true)
+    public long getCatalogVersion() {
+        Long version = medicineRepository.getCatalogVersion();
+        return version != null ? version : 0L;
+    }
+    
+    /**
+     * Loads every medicine with its inventory aggregates (and recent order volume for
+     * suggestion ranking) into a new snapshot.
+     * The version is read first: every change up to it has committed, so the rows read
+     * below include it, and anything committed later raises the version for the next poll.
+     * The previous snapshot (may be null) carries over cache validators of unchanged content.
+     */
+    @Transactional(readOnly = true)
+    public CatalogSnapshot buildSnapshot(CatalogSnapshot previous) {
+        long version = getCatalogVersion();
         
-        if (schedule != null) {
-            medicines = medicines.stream()
-                    .filter(m -> m.getSchedule() == schedule)
-                    .collect(Collectors.toList());
+        // Rows are streamed straight into the columnar store and detached, so the full
+        // entity graph and DTO list never exist at the same time
+        CatalogStore.Builder store = new CatalogStore.Builder();
+        try (Stream<Object[]> rows = medicineRepository.streamAllWithInventorySummary()) {
+            Iterator<Object[]> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                Object[] row = iterator.next();
+                Medicine medicine = (Medicine) row[0];
+                MedicineInventorySummary summary = (MedicineInventorySummary) row[1];
+                store.add(convertToDto(medicine, summary));
+                
+                entityManager.detach(medicine);
+                if (summary != null) {
+                    entityManager.detach(summary);
+                }
+            }
         }
         
-        if (prescriptionRequired != null) {
-            medicines = medicines.stream()
-                    .filter(m -> m.getPrescriptionRequired().equals(prescriptionRequired))
-                    .collect(Collectors.toList());
+        Map<UUID, Long> popularity = medicineRepository
+                .getPopularitySince(LocalDateTime.now().minusDays(popularityDays))
+                .stream()
+                .collect(Collectors.toMap(MedicinePopularity::getMedicineId, MedicinePopularity::getUnitsOrdered));
+        
+        return new CatalogSnapshot(version, Instant.now(), store.build(), popularity, previous);
+    }
+    
+    /**
+     * Builds DTOs for a list of medicines, reading inventory aggregates for all of them
+     * from the summary table by primary key (one lookup per chunk of ids).
+     */
+    private List<MedicineDto> convertToDtos(List<Medicine> medicines) {
+        if (medicines.isEmpty()) {
+            return Collections.emptyList();
         }
         
+        List<UUID> medicineIds = medicines.stream()
+                .map(Medicine::getId)
+                .collect(Collectors.toList());
+        Map<UUID, InventorySummary> summaries = inventorySummaryRepository.findAllByIdInChunks(medicineIds)
+                .stream()
+                .collect(Collectors.toMap(InventorySummary::getMedicineId, Function.identity()));
+        
         return medicines.stream()
-                .map(this::convertToDto)
+                .map(medicine -> convertToDto(medicine, summaries.get(medicine.getId())))
                 .collect(Collectors.toList());
     }
     
-    private MedicineDto convertToDto(Medicine medicine) {
-        UUID medicineId = medicine.getId();
-        LocalDate currentDate = LocalDate.now();
-        
-        // Get aggregated inventory data
-        Integer totalStock = inventoryRepository.getTotalAvailableQuantity(medicineId, currentDate);
-        BigDecimal minPrice = inventoryRepository.getMinPrice(medicineId, currentDate);
-        BigDecimal minMrp = inventoryRepository.getMinMrp(medicineId, currentDate);
-        BigDecimal maxDiscount = inventoryRepository.getMaxDiscount(medicineId, currentDate);
-        
-        // Handle null values
-        if (totalStock == null) totalStock = 0;
-        if (minPrice == null) minPrice = BigDecimal.ZERO;
-        if (minMrp == null) minMrp = BigDecimal.ZERO;
-        if (maxDiscount == null) maxDiscount = BigDecimal.ZERO;
+    MedicineDto convertToDto(Medicine medicine, InventorySummary summary) {
+        // Handle medicines without non-expired batches and null aggregates
+        int totalStock = 0;
+        BigDecimal minPrice = BigDecimal.ZERO;
+        BigDecimal minMrp = BigDecimal.ZERO;
+        BigDecimal maxDiscount = BigDecimal.ZERO;
+        if (summary != null) {
+            if (summary.getTotalStock() != null) totalStock = summary.getTotalStock().intValue();
+            if (summary.getMinPrice() != null) minPrice = summary.getMinPrice();
+            if (summary.getMinMrp() != null) minMrp = summary.getMinMrp();
+            if (summary.getMaxDiscount() != null) maxDiscount = summary.getMaxDiscount();
+        }
         
         return MedicineDto.builder()
                 .id(medicine.getId())
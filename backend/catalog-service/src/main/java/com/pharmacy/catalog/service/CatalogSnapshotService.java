@@ -0,0 +1,301 @@
+package com.pharmacy.catalog.service;
+
+import com.pharmacy.catalog.dto.CatalogCursor;
+import com.pharmacy.catalog.dto.CatalogFacets;
+import com.pharmacy.catalog.dto.CursorPage;
+import com.pharmacy.catalog.dto.MedicineBatchItem;
+import com.pharmacy.catalog.dto.MedicineDto;
+import com.pharmacy.catalog.dto.SuggestionDto;
+import com.pharmacy.catalog.model.Medicine;
+import com.pharmacy.catalog.search.CatalogFacetIndex;
+import com.pharmacy.catalog.search.SuggestionTrie;
+import com.pharmacy.catalog.snapshot.CacheValidator;
+import com.pharmacy.catalog.snapshot.CatalogSnapshot;
+import com.pharmacy.common.exception.PharmacyException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Serves catalog reads from an in-process {@link CatalogSnapshot}.
+ * The snapshot is built at startup and swapped atomically whenever the catalog version
+ * in the database changes (or it exceeds its maximum age). Until the first snapshot
+ * is available, reads fall back to {@link CatalogService}.
+ */
+@Service
+@Slf4j
+public class CatalogSnapshotService {
+
+    private final CatalogService catalogService;
+    private final AtomicReference<CatalogSnapshot> snapshot = new AtomicReference<>();
+
+    // Latest catalog version seen in the database
+    private volatile long observedVersion = -1;
+
+    @Value("${catalog.snapshot.enabled:true}")
+    private boolean enabled;
+
+    @Value("${catalog.snapshot.max-age-ms:300000}")
+    private long maxAgeMs;
+
+    @Value("${catalog.page.default-size:20}")
+    private int defaultPageSize;
+
+    @Value("${catalog.page.max-size:100}")
+    private int maxPageSize;
+
+    @Value("${catalog.search.fuzzy.enabled:true}")
+    private boolean fuzzyEnabled;
+
+    @Value("${catalog.search.fuzzy.budget-ms:25}")
+    private long fuzzyBudgetMs;
+
+    @Value("${catalog.search.fuzzy.max-results:20}")
+    private int fuzzyMaxResults;
+
+    @Value("${catalog.batch.max-size:300}")
+    private int maxBatchSize;
+
+    @Value("${catalog.suggest.default-size:8}")
+    private int defaultSuggestions;
+
+    public CatalogSnapshotService(CatalogService catalogService, MeterRegistry meterRegistry) {
+        this.catalogService = catalogService;
+
+        Gauge.builder("catalog.snapshot.age", this, CatalogSnapshotService::getSnapshotAgeSeconds)
+                .description("Seconds since the catalog snapshot was built")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("catalog.snapshot.version.lag", this, CatalogSnapshotService::getVersionLag)
+                .description("Catalog changes the snapshot is behind the database")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${catalog.snapshot.poll-interval-ms:5000}",
+               initialDelayString = "${catalog.snapshot.poll-interval-ms:5000}")
+    public void refreshIfChanged() {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            observedVersion = catalogService.getCatalogVersion();
+        } catch (Exception e) {
+            log.error("Error reading catalog version", e);
+            return;
+        }
+
+        CatalogSnapshot current = snapshot.get();
+        if (current == null
+                || current.getVersion() != observedVersion
+                || Duration.between(current.getBuiltAt(), Instant.now()).toMillis() > maxAgeMs) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Builds a new snapshot and swaps it in. On failure the previous snapshot keeps serving.
+     */
+    public void rebuild() {
+        try {
+            long start = System.nanoTime();
+            CatalogSnapshot next = catalogService.buildSnapshot(snapshot.get());
+            snapshot.set(next);
+            observedVersion = Math.max(observedVersion, next.getVersion());
+            log.info("Catalog snapshot v{} built with {} medicines ({} KB of row data) in {} ms",
+                    next.getVersion(), next.size(), next.getStore().estimatedBytes() / 1024,
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            log.error("Error building catalog snapshot", e);
+        }
+    }
+
+    public CatalogSnapshot current() {
+        return snapshot.get();
+    }
+
+    /**
+     * Validators for catalog listings; empty until the first snapshot is built.
+     */
+    public Optional<CacheValidator> catalogValidator() {
+        CatalogSnapshot current = snapshot.get();
+        return current == null ? Optional.empty() : Optional.of(current.getValidator());
+    }
+
+    /**
+     * Validators for a single medicine; empty if it is not in the snapshot.
+     */
+    public Optional<CacheValidator> medicineValidator(UUID id) {
+        CatalogSnapshot current = snapshot.get();
+        return current == null ? Optional.empty() : current.findValidator(id);
+    }
+
+    public MedicineDto getMedicineById(UUID id) {
+        CatalogSnapshot current = snapshot.get();
+        if (current == null) {
+            return catalogService.getMedicineById(id);
+        }
+        // Medicines created after the snapshot was built are still served from the database
+        return current.findById(id).orElseGet(() -> catalogService.getMedicineById(id));
+    }
+
+    /**
+     * Looks up many medicines at once. Ids found in the snapshot are served from memory; the
+     * rest (or all of them, before the first snapshot) are loaded with one query for medicines
+     * and one for inventory summaries. Items come back in request order, unknown ids marked as not found.
+     */
+    public List<MedicineBatchItem> getMedicinesByIds(List<UUID> ids) {
+        if (ids.size() > maxBatchSize) {
+            throw new PharmacyException("At most " + maxBatchSize + " ids can be requested at once",
+                    HttpStatus.BAD_REQUEST, "BATCH_TOO_LARGE");
+        }
+
+        Map<UUID, MedicineDto> resolved = new HashMap<>(ids.size() * 2);
+        Set<UUID> missing = new LinkedHashSet<>();
+        CatalogSnapshot current = snapshot.get();
+        for (UUID id : ids) {
+            if (id == null) {
+                continue;
+            }
+            Optional<MedicineDto> medicine = current != null ? current.findById(id) : Optional.empty();
+            if (medicine.isPresent()) {
+                resolved.put(id, medicine.get());
+            } else {
+                missing.add(id);
+            }
+        }
+        for (MedicineDto medicine : catalogService.getMedicinesByIds(missing)) {
+            resolved.put(medicine.getId(), medicine);
+        }
+
+        List<MedicineBatchItem> items = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            MedicineDto medicine = id != null ? resolved.get(id) : null;
+            items.add(MedicineBatchItem.builder()
+                    .id(id)
+                    .found(medicine != null)
+                    .medicine(medicine)
+                    .build());
+        }
+        return items;
+    }
+
+    /**
+     * One keyset page of active medicines matching the optional search text and filters.
+     * Search results are ordered by relevance, everything else by (name, id). When the first
+     * page of a search is empty, typo-tolerant matches are returned instead (flagged as fuzzy).
+     */
+    public CursorPage<MedicineDto> pageMedicines(
+            String query,
+            Medicine.Form form,
+            Medicine.Schedule schedule,
+            Boolean prescriptionRequired,
+            String cursor,
+            Integer limit
+    ) {
+        CatalogCursor after = CatalogCursor.decode(cursor);
+        int pageSize = resolvePageSize(limit);
+        CatalogSnapshot current = snapshot.get();
+        if (current == null) {
+            return catalogService.pageMedicines(query, form, schedule, prescriptionRequired, after, pageSize);
+        }
+        if (after != null) {
+            after.requireOrdering(CatalogCursor.Ordering.SNAPSHOT);
+        }
+        CursorPage<MedicineDto> page = current.page(query, form, schedule, prescriptionRequired, after, pageSize);
+        if (fuzzyEnabled && after == null && page.getItems().isEmpty() && query != null && !query.isBlank()) {
+            long deadline = System.nanoTime() + fuzzyBudgetMs * 1_000_000;
+            return current.fuzzyPage(query, form, schedule, prescriptionRequired,
+                    Math.min(pageSize, fuzzyMaxResults), deadline);
+        }
+        return page;
+    }
+
+    /**
+     * Facet counts for the current search and filters. Without a snapshot the matching
+     * medicines are loaded once and indexed on the fly.
+     */
+    public CatalogFacets facets(
+            String query,
+            Medicine.Form form,
+            Medicine.Schedule schedule,
+            Boolean prescriptionRequired
+    ) {
+        CatalogSnapshot current = snapshot.get();
+        if (current == null) {
+            List<MedicineDto> matching = catalogService.searchAndFilterMedicines(query, null, null, null);
+            return CatalogFacetIndex.build(matching).facets(null, form, schedule, prescriptionRequired);
+        }
+        return current.facets(query, form, schedule, prescriptionRequired);
+    }
+
+    /**
+     * Top typeahead suggestions for the prefix. Served only from the snapshot; returns
+     * nothing until the first snapshot is built rather than touching the database.
+     */
+    public List<SuggestionDto> suggest(String prefix, Integer limit) {
+        int count = limit != null ? limit : defaultSuggestions;
+        if (count < 1 || count > SuggestionTrie.MAX_SUGGESTIONS) {
+            throw new PharmacyException("limit must be between 1 and " + SuggestionTrie.MAX_SUGGESTIONS,
+                    HttpStatus.BAD_REQUEST, "INVALID_LIMIT");
+        }
+        CatalogSnapshot current = snapshot.get();
+        if (current == null) {
+            return Collections.emptyList();
+        }
+        return current.suggest(prefix, count);
+    }
+
+    private int resolvePageSize(Integer limit) {
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        if (limit < 1 || limit > maxPageSize) {
+            throw new PharmacyException("limit must be between 1 and " + maxPageSize,
+                    HttpStatus.BAD_REQUEST, "INVALID_LIMIT");
+        }
+        return limit;
+    }
+
+    private double getSnapshotAgeSeconds() {
+        CatalogSnapshot current = snapshot.get();
+        if (current == null) {
+            return Double.NaN;
+        }
+        return Duration.between(current.getBuiltAt(), Instant.now()).toMillis() / 1000.0;
+    }
+
+    private double getVersionLag() {
+        CatalogSnapshot current = snapshot.get();
+        if (current == null || observedVersion < 0) {
+            return Double.NaN;
+        }
+        return Math.max(0, observedVersion - current.getVersion());
+    }
+}
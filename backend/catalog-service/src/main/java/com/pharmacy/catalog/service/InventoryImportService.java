@@ -0,0 +1,344 @@
+package com.pharmacy.catalog.service;
+
+import com.pharmacy.catalog.dto.InventoryImportStatus;
+import com.pharmacy.catalog.imports.CsvReader;
+import com.pharmacy.catalog.imports.InventoryImportJob;
+import com.pharmacy.common.exception.PharmacyException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Bulk inventory import from supplier CSV files. The upload is spooled to a temporary file
+ * and processed by a single background worker: records are parsed as a stream, validated,
+ * and upserted on (medicine_id, batch_number) with one multi-row INSERT ... ON CONFLICT per
+ * chunk. Each chunk commits on its own, so row and summary locks are only held briefly, and
+ * the summary and change-feed triggers fire once per chunk rather than once per row.
+ * <p>
+ * The file's quantity is the opening stock of a new batch. Batches that already exist keep
+ * their live quantity (checkouts have been decrementing it) and only take the file's
+ * expiry, prices and location, so re-importing a file never restores sold stock.
+ */
+@Service
+@Slf4j
+public class InventoryImportService {
+    
+    private static final String[] REQUIRED_COLUMNS = {
+            "medicineid", "batchnumber", "expirydate", "quantityavailable", "unitprice", "mrp"
+    };
+    private static final BigDecimal MAX_PRICE = new BigDecimal("99999999.99");
+    private static final BigDecimal HUNDRED = new BigDecimal("100");
+    private static final int PARAMETERS_PER_ROW = 8;
+    private static final int MAX_RETAINED_JOBS = 50;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> new Thread(r, "inventory-import"));
+    
+    // Most recent jobs by id, oldest evicted first
+    private final Map<UUID, InventoryImportJob> jobs = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, InventoryImportJob> eldest) {
+            return size() > MAX_RETAINED_JOBS;
+        }
+    };
+    
+    @Value("${catalog.inventory-import.chunk-size:1000}")
+    private int chunkSize;
+    
+    @Value("${catalog.inventory-import.max-reported-errors:1000}")
+    private int maxReportedErrors;
+    
+    public InventoryImportService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+    
+    /**
+     * Spools the uploaded file and queues it for import.
+     */
+    public InventoryImportStatus submit(MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            throw new PharmacyException("Import file is empty", HttpStatus.BAD_REQUEST, "EMPTY_FILE");
+        }
+        
+        Path spooled;
+        try {
+            spooled = Files.createTempFile("inventory-import-", ".csv");
+            file.transferTo(spooled);
+        } catch (IOException e) {
+            log.error("Error spooling inventory import file", e);
+            throw new PharmacyException("Could not store import file", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        
+        InventoryImportJob job = new InventoryImportJob(file.getOriginalFilename(), spooled, maxReportedErrors);
+        synchronized (jobs) {
+            jobs.put(job.getId(), job);
+        }
+        worker.submit(() -> run(job));
+        log.info("Queued inventory import {} ({} bytes)", job.getId(), file.getSize());
+        return job.toStatus();
+    }
+    
+    public InventoryImportStatus getStatus(UUID jobId) {
+        InventoryImportJob job;
+        synchronized (jobs) {
+            job = jobs.get(jobId);
+        }
+        if (job == null) {
+            throw new PharmacyException("Import job not found", HttpStatus.NOT_FOUND, "IMPORT_NOT_FOUND");
+        }
+        return job.toStatus();
+    }
+    
+    public List<InventoryImportStatus> getRecentJobs() {
+        List<InventoryImportStatus> statuses = new ArrayList<>();
+        synchronized (jobs) {
+            jobs.values().forEach(job -> statuses.add(0, job.toStatus()));
+        }
+        return statuses;
+    }
+    
+    private void run(InventoryImportJob job) {
+        job.start();
+        long start = System.nanoTime();
+        try (CsvReader csv = new CsvReader(new InputStreamReader(Files.newInputStream(job.getFile()), StandardCharsets.UTF_8))) {
+            importRecords(job, csv);
+            job.complete();
+            log.info("Inventory import {} finished in {} ms: {}", job.getId(),
+                    (System.nanoTime() - start) / 1_000_000, job.toStatus());
+        } catch (Exception e) {
+            log.error("Inventory import {} failed", job.getId(), e);
+            job.fail(e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(job.getFile());
+            } catch (IOException e) {
+                log.warn("Could not delete spooled import file {}", job.getFile());
+            }
+        }
+    }
+    
+    private void importRecords(InventoryImportJob job, CsvReader csv) throws IOException {
+        List<String> header = csv.readRecord();
+        if (header == null) {
+            throw new IllegalArgumentException("File has no header row");
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i).replace("\uFEFF", "").replace("_", "").trim().toLowerCase(Locale.ROOT);
+            columns.put(name, i);
+        }
+        for (String required : REQUIRED_COLUMNS) {
+            if (!columns.containsKey(required)) {
+                throw new IllegalArgumentException("Missing required column: " + required);
+            }
+        }
+        
+        Set<UUID> knownMedicines = new HashSet<>(jdbcTemplate.queryForList("SELECT id FROM medicines", UUID.class));
+        
+        // Keyed by (medicine, batch): a repeated key flushes first, so later rows win as in the file
+        Map<String, InventoryRow> chunk = new LinkedHashMap<>();
+        long rowNumber = 0;
+        List<String> record;
+        while ((record = csv.readRecord()) != null) {
+            rowNumber++;
+            job.rowRead();
+            InventoryRow row;
+            try {
+                row = parseRow(rowNumber, record, columns, knownMedicines);
+            } catch (IllegalArgumentException e) {
+                job.rowFailed(rowNumber, e.getMessage());
+                continue;
+            }
+            
+            String key = row.medicineId() + "|" + row.batchNumber();
+            if (chunk.containsKey(key)) {
+                flush(job, chunk);
+            }
+            chunk.put(key, row);
+            if (chunk.size() >= chunkSize) {
+                flush(job, chunk);
+            }
+        }
+        flush(job, chunk);
+    }
+    
+    private void flush(InventoryImportJob job, Map<String, InventoryRow> chunk) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        // Lock rows in a fixed order so concurrent writers to the same medicines cannot deadlock
+        List<InventoryRow> rows = new ArrayList<>(chunk.values());
+        rows.sort(Comparator.comparing(InventoryRow::medicineId).thenComparing(InventoryRow::batchNumber));
+        chunk.clear();
+        
+        try {
+            int written = upsert(rows);
+            job.rowsWritten(written, rows.size() - written);
+        } catch (DataAccessException e) {
+            // Isolate the offending rows instead of failing the whole chunk
+            for (InventoryRow row : rows) {
+                try {
+                    int written = upsert(List.of(row));
+                    job.rowsWritten(written, 1 - written);
+                } catch (DataAccessException rowError) {
+                    job.rowFailed(row.row(), rowError.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Inserts new batches and refreshes the expiry, prices and location of existing ones
+     * without touching their quantity; rows identical to what is stored are skipped. Returns
+     * rows inserted or changed.
+     */
+    private int upsert(List<InventoryRow> rows) {
+        StringBuilder sql = new StringBuilder(
+                "INSERT INTO medicine_inventory (medicine_id, batch_number, expiry_date, quantity_available, " +
+                "unit_price, mrp, discount_percentage, warehouse_location) VALUES ");
+        Object[] args = new Object[rows.size() * PARAMETERS_PER_ROW];
+        int i = 0;
+        for (InventoryRow row : rows) {
+            sql.append(i == 0 ? "" : ", ").append("(?, ?, ?, ?, ?, ?, ?, ?)");
+            args[i++] = row.medicineId();
+            args[i++] = row.batchNumber();
+            args[i++] = row.expiryDate();
+            args[i++] = row.quantity();
+            args[i++] = row.unitPrice();
+            args[i++] = row.mrp();
+            args[i++] = row.discountPercentage();
+            args[i++] = row.warehouseLocation();
+        }
+        sql.append(" ON CONFLICT (medicine_id, batch_number) DO UPDATE SET " +
+                "expiry_date = EXCLUDED.expiry_date, " +
+                "unit_price = EXCLUDED.unit_price, " +
+                "mrp = EXCLUDED.mrp, " +
+                "discount_percentage = EXCLUDED.discount_percentage, " +
+                "warehouse_location = EXCLUDED.warehouse_location " +
+                "WHERE (medicine_inventory.expiry_date, medicine_inventory.unit_price, medicine_inventory.mrp, " +
+                "medicine_inventory.discount_percentage, medicine_inventory.warehouse_location) " +
+                "IS DISTINCT FROM (EXCLUDED.expiry_date, EXCLUDED.unit_price, EXCLUDED.mrp, " +
+                "EXCLUDED.discount_percentage, EXCLUDED.warehouse_location)");
+        return jdbcTemplate.update(sql.toString(), args);
+    }
+    
+    private static InventoryRow parseRow(long rowNumber, List<String> record, Map<String, Integer> columns,
+                                         Set<UUID> knownMedicines) {
+        UUID medicineId;
+        try {
+            medicineId = UUID.fromString(field(record, columns, "medicineid"));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new IllegalArgumentException("Invalid medicineId");
+        }
+        if (!knownMedicines.contains(medicineId)) {
+            throw new IllegalArgumentException("Unknown medicineId " + medicineId);
+        }
+        
+        String batchNumber = field(record, columns, "batchnumber");
+        if (batchNumber == null || batchNumber.length() > 100) {
+            throw new IllegalArgumentException("batchNumber is required (max 100 characters)");
+        }
+        
+        LocalDate expiryDate;
+        try {
+            expiryDate = LocalDate.parse(field(record, columns, "expirydate"));
+        } catch (DateTimeParseException | NullPointerException e) {
+            throw new IllegalArgumentException("expiryDate must be an ISO date (yyyy-MM-dd)");
+        }
+        
+        int quantity;
+        try {
+            quantity = Integer.parseInt(field(record, columns, "quantityavailable"));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("quantityAvailable must be a whole number");
+        }
+        if (quantity < 0) {
+            throw new IllegalArgumentException("quantityAvailable must not be negative");
+        }
+        
+        BigDecimal unitPrice = amount(record, columns, "unitprice", "unitPrice", MAX_PRICE);
+        BigDecimal mrp = amount(record, columns, "mrp", "mrp", MAX_PRICE);
+        if (unitPrice.compareTo(mrp) > 0) {
+            throw new IllegalArgumentException("unitPrice must not exceed mrp");
+        }
+        BigDecimal discount = field(record, columns, "discountpercentage") == null
+                ? BigDecimal.ZERO
+                : amount(record, columns, "discountpercentage", "discountPercentage", HUNDRED);
+        
+        String warehouseLocation = field(record, columns, "warehouselocation");
+        if (warehouseLocation != null && warehouseLocation.length() > 100) {
+            throw new IllegalArgumentException("warehouseLocation must be at most 100 characters");
+        }
+        
+        return new InventoryRow(rowNumber, medicineId, batchNumber, expiryDate, quantity,
+                unitPrice, mrp, discount, warehouseLocation);
+    }
+    
+    private static BigDecimal amount(List<String> record, Map<String, Integer> columns, String column,
+                                     String label, BigDecimal max) {
+        BigDecimal value;
+        try {
+            value = new BigDecimal(field(record, columns, column));
+        } catch (NumberFormatException | NullPointerException e) {
+            throw new IllegalArgumentException(label + " must be a number");
+        }
+        if (value.signum() < 0 || value.compareTo(max) > 0 || value.stripTrailingZeros().scale() > 2) {
+            throw new IllegalArgumentException(label + " must be between 0 and " + max + " with at most 2 decimals");
+        }
+        return value;
+    }
+    
+    // Trimmed field value, null when the column is absent or the field blank
+    private static String field(List<String> record, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= record.size()) {
+            return null;
+        }
+        String value = record.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+    
+    private record InventoryRow(
+            long row,
+            UUID medicineId,
+            String batchNumber,
+            LocalDate expiryDate,
+            int quantity,
+            BigDecimal unitPrice,
+            BigDecimal mrp,
+            BigDecimal discountPercentage,
+            String warehouseLocation
+    ) {
+    }
+}
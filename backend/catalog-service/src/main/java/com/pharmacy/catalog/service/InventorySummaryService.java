@@ -0,0 +1,29 @@
+package com.pharmacy.catalog.service;
+
+import com.pharmacy.catalog.repository.MedicineInventorySummaryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Daily roll-forward of the inventory summary: batches expiring at midnight drop out of
+ * the aggregates without any write to medicine_inventory, so the triggers alone miss them.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InventorySummaryService {
+    
+    private final MedicineInventorySummaryRepository summaryRepository;
+    
+    @Scheduled(cron = "${catalog.inventory-summary.roll-forward-cron:5 0 0 * * *}")
+    public void rollForward() {
+        try {
+            Integer refreshed = summaryRepository.rollForward();
+            log.info("Inventory summary rolled forward for {} medicines", refreshed);
+        } catch (Exception e) {
+            log.error("Error rolling forward inventory summary", e);
+        }
+    }
+}
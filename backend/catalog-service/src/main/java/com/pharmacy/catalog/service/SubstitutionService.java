@@ -0,0 +1,117 @@
+package com.pharmacy.catalog.service;
+
+import com.pharmacy.catalog.dto.MedicineDto;
+import com.pharmacy.catalog.dto.SubstituteDto;
+import com.pharmacy.catalog.model.MedicineInventorySummary;
+import com.pharmacy.catalog.repository.MedicineInventorySummaryRepository;
+import com.pharmacy.catalog.snapshot.CatalogSnapshot;
+import com.pharmacy.common.exception.PharmacyException;
+import com.pharmacy.common.money.Money;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Generic substitutes for a medicine: the equivalence class comes precomputed from the
+ * catalog snapshot, stock and price are read live from the inventory summaries of the
+ * class members (one primary-key lookup) so a sold-out batch is never offered.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SubstitutionService {
+
+    private static final Comparator<SubstituteDto> CHEAPEST_FIRST = Comparator
+            .comparing(SubstituteDto::getSellingPrice)
+            .thenComparing(SubstituteDto::getAvailableStock, Comparator.reverseOrder())
+            .thenComparing(SubstituteDto::getName)
+            .thenComparing(SubstituteDto::getMedicineId);
+
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final MedicineInventorySummaryRepository inventorySummaryRepository;
+
+    @Value("${catalog.substitutes.default-size:10}")
+    private int defaultSize;
+
+    @Value("${catalog.substitutes.max-size:50}")
+    private int maxSize;
+
+    /**
+     * In-stock medicines with the same generic name, strength and form, cheapest selling
+     * price first (then most stock). Empty until the first catalog snapshot is built.
+     */
+    @Transactional(readOnly = true)
+    public List<SubstituteDto> findSubstitutes(UUID medicineId, Integer limit) {
+        int count = limit != null ? limit : defaultSize;
+        if (count < 1 || count > maxSize) {
+            throw new PharmacyException("limit must be between 1 and " + maxSize,
+                    HttpStatus.BAD_REQUEST, "INVALID_LIMIT");
+        }
+
+        CatalogSnapshot snapshot = catalogSnapshotService.current();
+        if (snapshot == null) {
+            return Collections.emptyList();
+        }
+        MedicineDto medicine = catalogSnapshotService.getMedicineById(medicineId);
+        List<MedicineDto> equivalents = snapshot.equivalents(medicine);
+        if (equivalents.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<UUID, MedicineInventorySummary> summaries = inventorySummaryRepository
+                .findAllByIdInChunks(equivalents.stream().map(MedicineDto::getId).collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(MedicineInventorySummary::getMedicineId, Function.identity()));
+
+        List<SubstituteDto> substitutes = new ArrayList<>();
+        for (MedicineDto equivalent : equivalents) {
+            MedicineInventorySummary summary = summaries.get(equivalent.getId());
+            if (summary == null || summary.getBestUnitPrice() == null
+                    || summary.getTotalStock() == null || summary.getTotalStock() <= 0) {
+                continue;
+            }
+            substitutes.add(toSubstitute(equivalent, summary));
+        }
+        substitutes.sort(CHEAPEST_FIRST);
+        log.debug("{} of {} equivalents of {} are in stock", substitutes.size(), equivalents.size(), medicineId);
+        return substitutes.size() > count ? substitutes.subList(0, count) : substitutes;
+    }
+
+    private SubstituteDto toSubstitute(MedicineDto medicine, MedicineInventorySummary summary) {
+        BigDecimal unitPrice = summary.getBestUnitPrice();
+        BigDecimal discount = summary.getBestDiscountPercentage() != null
+                ? summary.getBestDiscountPercentage()
+                : BigDecimal.ZERO;
+        BigDecimal sellingPrice = Money.lineTotal(unitPrice, 1, discount);
+
+        return SubstituteDto.builder()
+                .medicineId(medicine.getId())
+                .name(medicine.getName())
+                .genericName(medicine.getGenericName())
+                .manufacturer(medicine.getManufacturer())
+                .strength(medicine.getStrength())
+                .form(medicine.getForm())
+                .prescriptionRequired(medicine.getPrescriptionRequired())
+                .schedule(medicine.getSchedule())
+                .imageUrl(medicine.getImageUrl())
+                .availableStock(summary.getTotalStock())
+                .unitPrice(unitPrice)
+                .discountPercentage(discount)
+                .sellingPrice(sellingPrice)
+                .mrp(summary.getMinMrp())
+                .build();
+    }
+}
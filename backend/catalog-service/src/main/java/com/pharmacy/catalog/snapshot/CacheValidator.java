@@ -0,0 +1,24 @@
+package com.pharmacy.catalog.snapshot;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * HTTP cache validators for a catalog representation: a strong ETag (already quoted)
+ * and the time it last changed, rounded up to whole seconds as in the Last-Modified header
+ * (rounding down could date a change to before an earlier response from the same second).
+ */
+public record CacheValidator(String etag, Instant lastModified) {
+
+    static CacheValidator of(String prefix, long fingerprint, Instant lastModified) {
+        Instant seconds = lastModified.truncatedTo(ChronoUnit.SECONDS);
+        if (seconds.isBefore(lastModified)) {
+            seconds = seconds.plusSeconds(1);
+        }
+        return new CacheValidator("\"" + prefix + Long.toHexString(fingerprint) + "\"", seconds);
+    }
+
+    public long lastModifiedMillis() {
+        return lastModified.toEpochMilli();
+    }
+}
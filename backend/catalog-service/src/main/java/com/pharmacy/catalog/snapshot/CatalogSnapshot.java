@@ -0,0 +1,356 @@
+package com.pharmacy.catalog.snapshot;
+
+import com.pharmacy.catalog.dto.CatalogCursor;
+import com.pharmacy.catalog.dto.CatalogFacets;
+import com.pharmacy.catalog.dto.CursorPage;
+import com.pharmacy.catalog.dto.MedicineDto;
+import com.pharmacy.catalog.dto.SuggestionDto;
+import com.pharmacy.catalog.model.Medicine;
+import com.pharmacy.catalog.search.CatalogFacetIndex;
+import com.pharmacy.catalog.search.MedicineSearchIndex;
+import com.pharmacy.catalog.search.SubstitutionIndex;
+import com.pharmacy.catalog.search.SuggestionTrie;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.IntFunction;
+
+/**
+ * Immutable, indexed view of the catalog (medicines plus aggregated inventory figures).
+ * Rows live in a columnar {@link CatalogStore}; indexes refer to rows by ordinal, and
+ * DTOs are built only for the rows a request returns.
+ */
+public class CatalogSnapshot {
+
+    @Getter
+    private final long version;
+
+    @Getter
+    private final Instant builtAt;
+
+    // All medicines, active ones first in (name, id) order
+    @Getter
+    private final CatalogStore store;
+
+    // N-gram index over the active medicines (ordinal = store row)
+    @Getter
+    private final MedicineSearchIndex searchIndex;
+
+    // Typeahead over names, generic names and strengths of the active medicines
+    @Getter
+    private final SuggestionTrie suggestionTrie;
+
+    // Per-value facet bitsets over the active medicines (same ordinals as the search index)
+    private final CatalogFacetIndex facetIndex;
+
+    // Generic name + strength + form equivalence classes of the active medicines
+    private final SubstitutionIndex substitutionIndex;
+
+    // ETag/Last-Modified for catalog listings, covering every medicine and its inventory figures
+    @Getter
+    private final CacheValidator validator;
+
+    // Per row: content fingerprint and Last-Modified (epoch seconds) of the medicine
+    private final long[] fingerprints;
+    private final long[] lastModified;
+
+    // Active rows of each form / schedule, ascending (so still in name order)
+    private final int[][] activeByForm;
+    private final int[][] activeBySchedule;
+
+    /**
+     * @param previous the snapshot being replaced, if any; validators of content that has not
+     *                 changed keep its Last-Modified time, changed content gets builtAt
+     */
+    public CatalogSnapshot(long version, Instant builtAt, CatalogStore store, Map<UUID, Long> popularity,
+                           CatalogSnapshot previous) {
+        this.version = version;
+        this.builtAt = builtAt;
+        this.store = store;
+
+        int size = store.size();
+        long builtAtSeconds = CacheValidator.of("", 0, builtAt).lastModified().getEpochSecond();
+        this.fingerprints = new long[size];
+        this.lastModified = new long[size];
+        long catalogFingerprint = size;
+        for (int row = 0; row < size; row++) {
+            long fingerprint = fingerprint(store.toDto(row));
+            fingerprints[row] = fingerprint;
+            // Order-independent combination, so the catalog ETag does not depend on load order
+            catalogFingerprint += mix(fingerprint);
+
+            int previousRow = previous != null ? previous.store.find(store.id(row)) : -1;
+            lastModified[row] = previousRow >= 0 && previous.fingerprints[previousRow] == fingerprint
+                    ? previous.lastModified[previousRow]
+                    : builtAtSeconds;
+        }
+        CacheValidator catalogValidator = CacheValidator.of("c-", catalogFingerprint, builtAt);
+        this.validator = previous != null && previous.validator.etag().equals(catalogValidator.etag())
+                ? previous.validator
+                : catalogValidator;
+
+        this.activeByForm = groupRows(Medicine.Form.values().length, row -> store.form(row));
+        this.activeBySchedule = groupRows(Medicine.Schedule.values().length, row -> store.schedule(row));
+
+        this.searchIndex = MedicineSearchIndex.build(store);
+        this.suggestionTrie = SuggestionTrie.build(store, popularity);
+        this.facetIndex = CatalogFacetIndex.build(store.activeView());
+        this.substitutionIndex = SubstitutionIndex.build(store);
+    }
+
+    public Optional<MedicineDto> findById(UUID id) {
+        int row = store.find(id);
+        return row >= 0 ? Optional.of(store.toDto(row)) : Optional.empty();
+    }
+
+    public Optional<CacheValidator> findValidator(UUID id) {
+        int row = store.find(id);
+        if (row < 0) {
+            return Optional.empty();
+        }
+        return Optional.of(CacheValidator.of("m-", fingerprints[row], Instant.ofEpochSecond(lastModified[row])));
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    /**
+     * Active medicines with the same generic name, strength and form as the given one,
+     * excluding the medicine itself, in name order.
+     */
+    public List<MedicineDto> equivalents(MedicineDto medicine) {
+        int[] rows = substitutionIndex.equivalents(medicine);
+        List<MedicineDto> result = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            if (!store.id(row).equals(medicine.getId())) {
+                result.add(store.toDto(row));
+            }
+        }
+        return result;
+    }
+
+    public List<SuggestionDto> suggest(String prefix, int limit) {
+        return suggestionTrie.suggest(prefix, limit);
+    }
+
+    /**
+     * Form, schedule and prescription-required counts for the active medicines matching
+     * the query (all active medicines when it is blank) and the selected filters.
+     */
+    public CatalogFacets facets(
+            String query,
+            Medicine.Form form,
+            Medicine.Schedule schedule,
+            Boolean prescriptionRequired
+    ) {
+        BitSet base = query != null && !query.trim().isEmpty() ? searchIndex.matchSet(query) : null;
+        return facetIndex.facets(base, form, schedule, prescriptionRequired);
+    }
+
+    /**
+     * One page of active medicines after the given cursor. Unranked listings are ordered by
+     * (name, id) and start with a binary search; search results are ordered by (score desc, name, id).
+     * Either way only the rows of the requested page are visited past the start position
+     * (plus any rows rejected by filters), and only the returned rows become DTOs.
+     */
+    public CursorPage<MedicineDto> page(
+            String query,
+            Medicine.Form form,
+            Medicine.Schedule schedule,
+            Boolean prescriptionRequired,
+            CatalogCursor after,
+            int limit
+    ) {
+        List<MedicineDto> items = new ArrayList<>(limit);
+        CatalogCursor next = null;
+        boolean hasMore = false;
+
+        if (query != null && !query.trim().isEmpty()) {
+            List<MedicineSearchIndex.Hit> hits = searchIndex.searchHits(query);
+            int start = after == null ? 0 : firstHitAfter(hits, after);
+            for (int i = start; i < hits.size(); i++) {
+                MedicineSearchIndex.Hit hit = hits.get(i);
+                if (!matches(hit.ordinal(), form, schedule, prescriptionRequired)) continue;
+                if (items.size() == limit) {
+                    hasMore = true;
+                    break;
+                }
+                MedicineDto medicine = store.toDto(hit.ordinal());
+                items.add(medicine);
+                next = CatalogCursor.of(CatalogCursor.Ordering.SNAPSHOT, medicine, hit.score());
+            }
+        } else {
+            int[] candidates = listingRows(form, schedule);
+            int count = candidates != null ? candidates.length : store.activeCount();
+            int start = after == null ? 0 : firstAfter(candidates, count, after);
+            for (int i = start; i < count; i++) {
+                int row = candidates != null ? candidates[i] : i;
+                if (!matches(row, form, schedule, prescriptionRequired)) continue;
+                if (items.size() == limit) {
+                    hasMore = true;
+                    break;
+                }
+                MedicineDto medicine = store.toDto(row);
+                items.add(medicine);
+                next = CatalogCursor.of(CatalogCursor.Ordering.SNAPSHOT, medicine, 0);
+            }
+        }
+
+        return CursorPage.<MedicineDto>builder()
+                .items(items)
+                .nextCursor(hasMore ? next.encode() : null)
+                .hasMore(hasMore)
+                .limit(limit)
+                .build();
+    }
+
+    /**
+     * Typo-tolerant matches for a search that found nothing exactly, best first. Not pageable:
+     * at most limit items are returned, and verification stops at the deadline (System.nanoTime).
+     */
+    public CursorPage<MedicineDto> fuzzyPage(
+            String query,
+            Medicine.Form form,
+            Medicine.Schedule schedule,
+            Boolean prescriptionRequired,
+            int limit,
+            long deadlineNanos
+    ) {
+        List<MedicineDto> items = new ArrayList<>(limit);
+        for (MedicineSearchIndex.Hit hit : searchIndex.fuzzySearchHits(query, Integer.MAX_VALUE, deadlineNanos)) {
+            if (items.size() == limit) {
+                break;
+            }
+            if (matches(hit.ordinal(), form, schedule, prescriptionRequired)) {
+                items.add(store.toDto(hit.ordinal()));
+            }
+        }
+        return CursorPage.<MedicineDto>builder()
+                .items(items)
+                .hasMore(false)
+                .limit(limit)
+                .fuzzy(true)
+                .build();
+    }
+
+    // Rows of an unranked listing: the form or schedule group, or null for every active row
+    private int[] listingRows(Medicine.Form form, Medicine.Schedule schedule) {
+        if (form != null) {
+            return activeByForm[form.ordinal()];
+        }
+        if (schedule != null) {
+            return activeBySchedule[schedule.ordinal()];
+        }
+        return null;
+    }
+
+    private boolean matches(
+            int row,
+            Medicine.Form form,
+            Medicine.Schedule schedule,
+            Boolean prescriptionRequired
+    ) {
+        if (form != null && store.form(row) != form) return false;
+        if (schedule != null && store.schedule(row) != schedule) return false;
+        return prescriptionRequired == null || prescriptionRequired.equals(store.prescriptionRequired(row));
+    }
+
+    private int[][] groupRows(int values, IntFunction<Enum<?>> key) {
+        int[] counts = new int[values];
+        for (int row = 0; row < store.activeCount(); row++) {
+            Enum<?> value = key.apply(row);
+            if (value != null) {
+                counts[value.ordinal()]++;
+            }
+        }
+        int[][] groups = new int[values][];
+        for (int i = 0; i < values; i++) {
+            groups[i] = new int[counts[i]];
+            counts[i] = 0;
+        }
+        for (int row = 0; row < store.activeCount(); row++) {
+            Enum<?> value = key.apply(row);
+            if (value != null) {
+                groups[value.ordinal()][counts[value.ordinal()]++] = row;
+            }
+        }
+        return groups;
+    }
+
+    // Index of the first candidate sorted strictly after (name, id)
+    private int firstAfter(int[] candidates, int count, CatalogCursor after) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int row = candidates != null ? candidates[mid] : mid;
+            if (compareKey(0, row, after) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Index of the first hit sorted strictly after (score desc, name, id)
+    private int firstHitAfter(List<MedicineSearchIndex.Hit> sorted, CatalogCursor after) {
+        int low = 0;
+        int high = sorted.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            MedicineSearchIndex.Hit hit = sorted.get(mid);
+            if (compareKey(hit.score(), hit.ordinal(), after) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int compareKey(int rank, int row, CatalogCursor cursor) {
+        int result = Integer.compare(cursor.rank(), rank);
+        return result != 0 ? result : store.compareTo(row, cursor.name(), cursor.id());
+    }
+
+    /**
+     * 64-bit FNV-1a over every field of the DTO, so the ETag changes whenever the
+     * serialized representation does (updatedAt as well as the inventory figures).
+     */
+    private static long fingerprint(MedicineDto medicine) {
+        long hash = 0xcbf29ce484222325L;
+        Object[] fields = {
+                medicine.getId(), medicine.getName(), medicine.getGenericName(), medicine.getManufacturer(),
+                medicine.getStrength(), medicine.getForm(), medicine.getPrescriptionRequired(),
+                medicine.getSchedule(), medicine.getDescription(), medicine.getImageUrl(), medicine.getStatus(),
+                medicine.getTotalStock(), medicine.getMinPrice(), medicine.getMinMrp(), medicine.getMaxDiscount(),
+                medicine.getInStock(), medicine.getCreatedAt(), medicine.getUpdatedAt()
+        };
+        for (Object field : fields) {
+            String value = String.valueOf(field);
+            for (int i = 0; i < value.length(); i++) {
+                hash ^= value.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            // Field separator so that ("ab", "c") and ("a", "bc") differ
+            hash ^= 0x1f;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,421 @@
+package com.pharmacy.catalog.snapshot;
+
+import com.pharmacy.catalog.dto.MedicineDto;
+import com.pharmacy.catalog.model.Medicine;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.UUID;
+
+/**
+ * Columnar, immutable store of catalog rows. Every field of {@link MedicineDto} is kept in a
+ * primitive array: ids as two longs, strings as {@link StringDictionary} codes, enums as
+ * ordinals, decimals as unscaled longs with their scale and timestamps as epoch nanoseconds.
+ * A row costs roughly a hundred bytes plus its distinct text, instead of the object graph of
+ * an entity or DTO; DTOs are materialized only for rows that are actually returned.
+ * <p>
+ * Active medicines come first, ordered by (name, id), so row numbers 0..activeCount-1 are
+ * also the ordinals used by the search and facet indexes. Inactive medicines follow and are
+ * only reachable through {@link #find}.
+ */
+public final class CatalogStore {
+
+    private static final Medicine.Form[] FORMS = Medicine.Form.values();
+    private static final Medicine.Schedule[] SCHEDULES = Medicine.Schedule.values();
+    private static final Medicine.Status[] STATUSES = Medicine.Status.values();
+
+    private static final byte NULL_BYTE = -1;
+    private static final byte NULL_SCALE = Byte.MIN_VALUE;
+    private static final int NULL_INT = Integer.MIN_VALUE;
+    private static final long NULL_TIME = Long.MIN_VALUE;
+
+    // Decimal columns, stored interleaved per row
+    private static final int MIN_PRICE = 0;
+    private static final int MIN_MRP = 1;
+    private static final int MAX_DISCOUNT = 2;
+    private static final int DECIMALS = 3;
+
+    private final int size;
+    private final int activeCount;
+    private final StringDictionary strings;
+
+    private final long[] idHigh;
+    private final long[] idLow;
+    private final int[] names;
+    private final int[] genericNames;
+    private final int[] manufacturers;
+    private final int[] strengths;
+    private final int[] descriptions;
+    private final int[] imageUrls;
+    private final byte[] forms;
+    private final byte[] schedules;
+    private final byte[] statuses;
+    private final byte[] prescriptionRequired;
+    private final byte[] inStock;
+    private final int[] totalStock;
+    private final long[] decimals;
+    private final byte[] scales;
+    private final long[] createdAt;
+    private final long[] updatedAt;
+
+    // Open-addressing id -> row + 1 table (0 marks an empty slot)
+    private final int[] idTable;
+
+    private CatalogStore(Builder builder, int[] order, int activeCount, StringDictionary strings) {
+        this.size = order.length;
+        this.activeCount = activeCount;
+        this.strings = strings;
+
+        this.idHigh = permute(builder.idHigh, order);
+        this.idLow = permute(builder.idLow, order);
+        this.names = permute(builder.names, order);
+        this.genericNames = permute(builder.genericNames, order);
+        this.manufacturers = permute(builder.manufacturers, order);
+        this.strengths = permute(builder.strengths, order);
+        this.descriptions = permute(builder.descriptions, order);
+        this.imageUrls = permute(builder.imageUrls, order);
+        this.forms = permute(builder.forms, order);
+        this.schedules = permute(builder.schedules, order);
+        this.statuses = permute(builder.statuses, order);
+        this.prescriptionRequired = permute(builder.prescriptionRequired, order);
+        this.inStock = permute(builder.inStock, order);
+        this.totalStock = permute(builder.totalStock, order);
+        this.createdAt = permute(builder.createdAt, order);
+        this.updatedAt = permute(builder.updatedAt, order);
+
+        this.decimals = new long[size * DECIMALS];
+        this.scales = new byte[size * DECIMALS];
+        for (int row = 0; row < size; row++) {
+            System.arraycopy(builder.decimals, order[row] * DECIMALS, decimals, row * DECIMALS, DECIMALS);
+            System.arraycopy(builder.scales, order[row] * DECIMALS, scales, row * DECIMALS, DECIMALS);
+        }
+
+        this.idTable = new int[Math.max(2, Integer.highestOneBit(Math.max(1, size) * 2) * 2)];
+        for (int row = 0; row < size; row++) {
+            int slot = slot(idHigh[row], idLow[row]);
+            while (idTable[slot] != 0) {
+                slot = (slot + 1) & (idTable.length - 1);
+            }
+            idTable[slot] = row + 1;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int activeCount() {
+        return activeCount;
+    }
+
+    /**
+     * Row of the medicine, or -1 if it is not in the store.
+     */
+    public int find(UUID id) {
+        long high = id.getMostSignificantBits();
+        long low = id.getLeastSignificantBits();
+        int slot = slot(high, low);
+        while (idTable[slot] != 0) {
+            int row = idTable[slot] - 1;
+            if (idHigh[row] == high && idLow[row] == low) {
+                return row;
+            }
+            slot = (slot + 1) & (idTable.length - 1);
+        }
+        return -1;
+    }
+
+    public UUID id(int row) {
+        return new UUID(idHigh[row], idLow[row]);
+    }
+
+    public String name(int row) {
+        return strings.get(names[row]);
+    }
+
+    public String genericName(int row) {
+        return strings.get(genericNames[row]);
+    }
+
+    public String strength(int row) {
+        return strings.get(strengths[row]);
+    }
+
+    /**
+     * Dictionary holding every text value of the store; the code accessors below let indexes
+     * work once per distinct value instead of once per row.
+     */
+    public StringDictionary strings() {
+        return strings;
+    }
+
+    public int nameCode(int row) {
+        return names[row];
+    }
+
+    public int genericNameCode(int row) {
+        return genericNames[row];
+    }
+
+    public int manufacturerCode(int row) {
+        return manufacturers[row];
+    }
+
+    public Medicine.Form form(int row) {
+        return forms[row] == NULL_BYTE ? null : FORMS[forms[row]];
+    }
+
+    public Medicine.Schedule schedule(int row) {
+        return schedules[row] == NULL_BYTE ? null : SCHEDULES[schedules[row]];
+    }
+
+    public Boolean prescriptionRequired(int row) {
+        return toBoolean(prescriptionRequired[row]);
+    }
+
+    public Boolean inStock(int row) {
+        return toBoolean(inStock[row]);
+    }
+
+    /**
+     * Compares the row with a (name, id) key in the store's row order.
+     */
+    public int compareTo(int row, String name, UUID id) {
+        int result = name(row).compareTo(name);
+        return result != 0 ? result : id(row).compareTo(id);
+    }
+
+    public MedicineDto toDto(int row) {
+        int base = row * DECIMALS;
+        return MedicineDto.builder()
+                .id(id(row))
+                .name(strings.get(names[row]))
+                .genericName(strings.get(genericNames[row]))
+                .manufacturer(strings.get(manufacturers[row]))
+                .strength(strings.get(strengths[row]))
+                .form(form(row))
+                .prescriptionRequired(toBoolean(prescriptionRequired[row]))
+                .schedule(schedule(row))
+                .description(strings.get(descriptions[row]))
+                .imageUrl(strings.get(imageUrls[row]))
+                .status(statuses[row] == NULL_BYTE ? null : STATUSES[statuses[row]])
+                .totalStock(totalStock[row] == NULL_INT ? null : totalStock[row])
+                .minPrice(toDecimal(decimals[base + MIN_PRICE], scales[base + MIN_PRICE]))
+                .minMrp(toDecimal(decimals[base + MIN_MRP], scales[base + MIN_MRP]))
+                .maxDiscount(toDecimal(decimals[base + MAX_DISCOUNT], scales[base + MAX_DISCOUNT]))
+                .inStock(toBoolean(inStock[row]))
+                .createdAt(toTime(createdAt[row]))
+                .updatedAt(toTime(updatedAt[row]))
+                .build();
+    }
+
+    /**
+     * Active medicines as a list whose elements are materialized on access; meant for
+     * one pass over the catalog (building indexes), not for keeping.
+     */
+    public List<MedicineDto> activeView() {
+        return new RowView(activeCount);
+    }
+
+    /**
+     * Approximate heap used by the columns, the id table and the dictionary.
+     */
+    public long estimatedBytes() {
+        long perRow = 2 * 8 + 6 * 4 + 5 + 4 + DECIMALS * 9 + 2 * 8;
+        return perRow * size + 4L * idTable.length + strings.estimatedBytes();
+    }
+
+    private int slot(long high, long low) {
+        long hash = (high ^ low) * 0x9e3779b97f4a7c15L;
+        return (int) (hash ^ (hash >>> 32)) & (idTable.length - 1);
+    }
+
+    private static Boolean toBoolean(byte value) {
+        return value == NULL_BYTE ? null : value == 1;
+    }
+
+    private static BigDecimal toDecimal(long unscaled, byte scale) {
+        return scale == NULL_SCALE ? null : BigDecimal.valueOf(unscaled, scale);
+    }
+
+    private static LocalDateTime toTime(long epochNanos) {
+        if (epochNanos == NULL_TIME) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochNanos, 1_000_000_000L),
+                (int) Math.floorMod(epochNanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+
+    private static long[] permute(long[] column, int[] order) {
+        long[] result = new long[order.length];
+        for (int row = 0; row < order.length; row++) {
+            result[row] = column[order[row]];
+        }
+        return result;
+    }
+
+    private static int[] permute(int[] column, int[] order) {
+        int[] result = new int[order.length];
+        for (int row = 0; row < order.length; row++) {
+            result[row] = column[order[row]];
+        }
+        return result;
+    }
+
+    private static byte[] permute(byte[] column, int[] order) {
+        byte[] result = new byte[order.length];
+        for (int row = 0; row < order.length; row++) {
+            result[row] = column[order[row]];
+        }
+        return result;
+    }
+
+    private final class RowView extends AbstractList<MedicineDto> implements RandomAccess {
+        private final int rows;
+
+        private RowView(int rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public MedicineDto get(int index) {
+            if (index < 0 || index >= rows) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return toDto(index);
+        }
+
+        @Override
+        public int size() {
+            return rows;
+        }
+    }
+
+    /**
+     * Accumulates rows in load order; {@link #build} sorts them and packs the dictionary.
+     */
+    public static final class Builder {
+        private final StringDictionary.Builder strings = new StringDictionary.Builder();
+        private int size;
+
+        private long[] idHigh = new long[16];
+        private long[] idLow = new long[16];
+        private int[] names = new int[16];
+        private int[] genericNames = new int[16];
+        private int[] manufacturers = new int[16];
+        private int[] strengths = new int[16];
+        private int[] descriptions = new int[16];
+        private int[] imageUrls = new int[16];
+        private byte[] forms = new byte[16];
+        private byte[] schedules = new byte[16];
+        private byte[] statuses = new byte[16];
+        private byte[] prescriptionRequired = new byte[16];
+        private byte[] inStock = new byte[16];
+        private int[] totalStock = new int[16];
+        private long[] decimals = new long[16 * DECIMALS];
+        private byte[] scales = new byte[16 * DECIMALS];
+        private long[] createdAt = new long[16];
+        private long[] updatedAt = new long[16];
+
+        public Builder add(MedicineDto medicine) {
+            if (size == idHigh.length) {
+                grow();
+            }
+            int row = size++;
+            idHigh[row] = medicine.getId().getMostSignificantBits();
+            idLow[row] = medicine.getId().getLeastSignificantBits();
+            names[row] = strings.add(medicine.getName());
+            genericNames[row] = strings.add(medicine.getGenericName());
+            manufacturers[row] = strings.add(medicine.getManufacturer());
+            strengths[row] = strings.add(medicine.getStrength());
+            descriptions[row] = strings.add(medicine.getDescription());
+            imageUrls[row] = strings.add(medicine.getImageUrl());
+            forms[row] = medicine.getForm() != null ? (byte) medicine.getForm().ordinal() : NULL_BYTE;
+            schedules[row] = medicine.getSchedule() != null ? (byte) medicine.getSchedule().ordinal() : NULL_BYTE;
+            statuses[row] = medicine.getStatus() != null ? (byte) medicine.getStatus().ordinal() : NULL_BYTE;
+            prescriptionRequired[row] = fromBoolean(medicine.getPrescriptionRequired());
+            inStock[row] = fromBoolean(medicine.getInStock());
+            totalStock[row] = medicine.getTotalStock() != null ? medicine.getTotalStock() : NULL_INT;
+            setDecimal(row * DECIMALS + MIN_PRICE, medicine.getMinPrice());
+            setDecimal(row * DECIMALS + MIN_MRP, medicine.getMinMrp());
+            setDecimal(row * DECIMALS + MAX_DISCOUNT, medicine.getMaxDiscount());
+            createdAt[row] = fromTime(medicine.getCreatedAt());
+            updatedAt[row] = fromTime(medicine.getUpdatedAt());
+            return this;
+        }
+
+        public CatalogStore build() {
+            byte active = (byte) Medicine.Status.ACTIVE.ordinal();
+            Integer[] rows = new Integer[size];
+            int activeCount = 0;
+            for (int row = 0; row < size; row++) {
+                rows[row] = row;
+                if (statuses[row] == active) {
+                    activeCount++;
+                }
+            }
+            Arrays.sort(rows, Comparator
+                    .comparing((Integer row) -> statuses[row] != active)
+                    .thenComparing(row -> strings.value(names[row]), Comparator.nullsFirst(Comparator.naturalOrder()))
+                    .thenComparing(row -> new UUID(idHigh[row], idLow[row])));
+
+            int[] order = new int[size];
+            for (int row = 0; row < size; row++) {
+                order[row] = rows[row];
+            }
+            return new CatalogStore(this, order, activeCount, strings.build());
+        }
+
+        private void setDecimal(int index, BigDecimal value) {
+            if (value == null) {
+                scales[index] = NULL_SCALE;
+                return;
+            }
+            if (value.scale() <= NULL_SCALE || value.scale() > Byte.MAX_VALUE
+                    || value.unscaledValue().bitLength() > 63) {
+                throw new IllegalArgumentException("Decimal out of range for the catalog store: " + value);
+            }
+            decimals[index] = value.unscaledValue().longValue();
+            scales[index] = (byte) value.scale();
+        }
+
+        private void grow() {
+            int capacity = idHigh.length * 2;
+            idHigh = Arrays.copyOf(idHigh, capacity);
+            idLow = Arrays.copyOf(idLow, capacity);
+            names = Arrays.copyOf(names, capacity);
+            genericNames = Arrays.copyOf(genericNames, capacity);
+            manufacturers = Arrays.copyOf(manufacturers, capacity);
+            strengths = Arrays.copyOf(strengths, capacity);
+            descriptions = Arrays.copyOf(descriptions, capacity);
+            imageUrls = Arrays.copyOf(imageUrls, capacity);
+            forms = Arrays.copyOf(forms, capacity);
+            schedules = Arrays.copyOf(schedules, capacity);
+            statuses = Arrays.copyOf(statuses, capacity);
+            prescriptionRequired = Arrays.copyOf(prescriptionRequired, capacity);
+            inStock = Arrays.copyOf(inStock, capacity);
+            totalStock = Arrays.copyOf(totalStock, capacity);
+            decimals = Arrays.copyOf(decimals, capacity * DECIMALS);
+            scales = Arrays.copyOf(scales, capacity * DECIMALS);
+            createdAt = Arrays.copyOf(createdAt, capacity);
+            updatedAt = Arrays.copyOf(updatedAt, capacity);
+        }
+
+        private static byte fromBoolean(Boolean value) {
+            return value == null ? NULL_BYTE : (byte) (value ? 1 : 0);
+        }
+
+        private static long fromTime(LocalDateTime time) {
+            if (time == null) {
+                return NULL_TIME;
+            }
+            return Math.addExact(Math.multiplyExact(time.toEpochSecond(ZoneOffset.UTC), 1_000_000_000L), time.getNano());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.pharmacy.catalog.snapshot;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable dictionary of distinct strings packed as UTF-8 into one byte array. Columns
+ * store int codes instead of String references, so repeated values (manufacturers,
+ * generic names, strengths) are kept once and no per-value String objects live on the
+ * heap; a String is only created when a value is read.
+ */
+public final class StringDictionary {
+
+    public static final int NULL_CODE = -1;
+
+    private final byte[] bytes;
+    private final int[] offsets;
+
+    private StringDictionary(byte[] bytes, int[] offsets) {
+        this.bytes = bytes;
+        this.offsets = offsets;
+    }
+
+    public String get(int code) {
+        if (code == NULL_CODE) {
+            return null;
+        }
+        return new String(bytes, offsets[code], offsets[code + 1] - offsets[code], StandardCharsets.UTF_8);
+    }
+
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Length of the value in UTF-8 bytes.
+     */
+    public int byteLength(int code) {
+        return offsets[code + 1] - offsets[code];
+    }
+
+    /**
+     * Byte offset of the first occurrence of the UTF-8 encoded needle in the value at or after
+     * fromIndex (a byte offset), or -1. Lets callers match values without decoding them.
+     */
+    public int indexOf(int code, byte[] needle, int fromIndex) {
+        int start = offsets[code];
+        int last = offsets[code + 1] - needle.length;
+        if (needle.length == 0) {
+            return start + fromIndex <= last ? fromIndex : -1;
+        }
+        byte first = needle[0];
+        for (int i = start + fromIndex; i <= last; i++) {
+            // Scan for the first byte, then compare the rest
+            if (bytes[i] != first) {
+                while (++i <= last && bytes[i] != first) {
+                }
+            }
+            if (i <= last) {
+                int j = i + 1;
+                int end = i + needle.length;
+                for (int k = 1; j < end && bytes[j] == needle[k]; j++, k++) {
+                }
+                if (j == end) {
+                    return i - start;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Code point of the character ending at the byte offset (exclusive) of the value.
+     */
+    public int codePointBefore(int code, int byteIndex) {
+        int end = offsets[code] + byteIndex;
+        int lead = end - 1;
+        if (bytes[lead] >= 0) {
+            return bytes[lead];
+        }
+        while ((bytes[lead] & 0xC0) == 0x80) {
+            lead--;
+        }
+        return new String(bytes, lead, end - lead, StandardCharsets.UTF_8).codePointAt(0);
+    }
+
+    public long estimatedBytes() {
+        return bytes.length + 4L * offsets.length;
+    }
+
+    public static final class Builder {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        public int add(String value) {
+            if (value == null) {
+                return NULL_CODE;
+            }
+            return codes.computeIfAbsent(value, v -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+        }
+
+        public int size() {
+            return values.size();
+        }
+
+        /**
+         * Value of a code added to this builder (for ordering rows before the dictionary is packed).
+         */
+        public String value(int code) {
+            return code == NULL_CODE ? null : values.get(code);
+        }
+
+        public StringDictionary build() {
+            int[] offsets = new int[values.size() + 1];
+            byte[][] encoded = new byte[values.size()][];
+            int length = 0;
+            for (int i = 0; i < values.size(); i++) {
+                encoded[i] = values.get(i).getBytes(StandardCharsets.UTF_8);
+                offsets[i] = length;
+                length += encoded[i].length;
+            }
+            offsets[values.size()] = length;
+
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < encoded.length; i++) {
+                System.arraycopy(encoded[i], 0, bytes, offsets[i], encoded[i].length);
+            }
+            return new StringDictionary(bytes, offsets);
+        }
+    }
+}
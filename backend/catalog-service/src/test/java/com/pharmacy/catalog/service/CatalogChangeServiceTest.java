@@ -0,0 +1,80 @@
+package com.pharmacy.catalog.service;
+
+import com.pharmacy.catalog.dto.CatalogChangesPage;
+import com.pharmacy.catalog.model.CatalogChange;
+import com.pharmacy.catalog.repository.CatalogChangeRepository;
+import com.pharmacy.common.exception.PharmacyException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CatalogChangeServiceTest {
+
+    private final CatalogChangeRepository repository = mock(CatalogChangeRepository.class);
+    private final CatalogChangeService service = new CatalogChangeService(repository);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "defaultBatchSize", 500);
+        ReflectionTestUtils.setField(service, "maxBatchSize", 1000);
+    }
+
+    /** Every change up to the id has been published and then pruned. */
+    private void givenEveryChangePrunedThrough(long id) {
+        when(repository.findHeadId()).thenReturn(id);
+        when(repository.findPrunedThroughId()).thenReturn(id);
+        when(repository.findByIdGreaterThanOrderByIdAsc(anyLong(), any(Pageable.class)))
+                .thenReturn(List.<CatalogChange>of());
+    }
+
+    @Test
+    void tokenBehindThePrunedChangesHasExpiredEvenWhenTheFeedIsEmpty() {
+        givenEveryChangePrunedThrough(120);
+
+        assertThatThrownBy(() -> service.getChangesSince("50", null))
+                .isInstanceOfSatisfying(PharmacyException.class, e -> {
+                    assertThat(e.getStatus()).isEqualTo(HttpStatus.GONE);
+                    assertThat(e.getErrorCode()).isEqualTo("SYNC_TOKEN_EXPIRED");
+                });
+    }
+
+    @Test
+    void tokenAheadOfTheHeadIsRejected() {
+        givenEveryChangePrunedThrough(120);
+
+        assertThatThrownBy(() -> service.getChangesSince("121", null))
+                .isInstanceOfSatisfying(PharmacyException.class, e -> {
+                    assertThat(e.getStatus()).isEqualTo(HttpStatus.BAD_REQUEST);
+                    assertThat(e.getErrorCode()).isEqualTo("INVALID_TOKEN");
+                });
+    }
+
+    @Test
+    void tokenAtTheHeadOfAnEmptyFeedHasNothingNew() {
+        givenEveryChangePrunedThrough(120);
+
+        CatalogChangesPage page = service.getChangesSince("120", null);
+
+        assertThat(page.getChanges()).isEmpty();
+        assertThat(page.getNextToken()).isEqualTo("120");
+        assertThat(page.isHasMore()).isFalse();
+    }
+
+    @Test
+    void headSurvivesPruningEveryChange() {
+        givenEveryChangePrunedThrough(120);
+
+        assertThat(service.getChangesSince(null, null).getNextToken()).isEqualTo("120");
+    }
+}
@@ -0,0 +1,97 @@
+package com.pharmacy.common.money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Money arithmetic on longs in minor units (paise). Amounts enter and leave as two-decimal
+ * {@link BigDecimal}s; discount percentages are held as basis points (12.5% = 1250).
+ * <p>
+ * A line's discount is its gross amount times the percentage, rounded once, half up, to
+ * the paisa; the line total is gross minus that discount. Totals are sums of these exact
+ * values, so subtotal - discount always equals the sum of the line totals.
+ */
+public final class Money {
+
+    public static final int SCALE = 2;
+
+    private static final long BASIS_POINTS = 10_000;
+
+    private Money() {
+    }
+
+    /**
+     * Amount in paise; amounts with more than two decimals are rounded half up.
+     */
+    public static long toMinor(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.HALF_UP).scaleByPowerOfTen(SCALE).longValueExact();
+    }
+
+    public static BigDecimal toDecimal(long minor) {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+
+    /**
+     * Percentage in basis points, rounded half up; null is no discount.
+     */
+    public static int toBasisPoints(BigDecimal percentage) {
+        if (percentage == null) {
+            return 0;
+        }
+        return percentage.setScale(SCALE, RoundingMode.HALF_UP).scaleByPowerOfTen(SCALE).intValueExact();
+    }
+
+    public static long gross(long unitPrice, int quantity) {
+        return Math.multiplyExact(unitPrice, (long) quantity);
+    }
+
+    /**
+     * Discount on an amount, rounded half up to the paisa.
+     */
+    public static long discount(long amount, int basisPoints) {
+        return divideHalfUp(Math.multiplyExact(amount, (long) basisPoints), BASIS_POINTS);
+    }
+
+    public static long lineTotal(long unitPrice, int quantity, int basisPoints) {
+        long gross = gross(unitPrice, quantity);
+        return gross - discount(gross, basisPoints);
+    }
+
+    /**
+     * Line total of a two-decimal unit price, quantity and discount percentage.
+     */
+    public static BigDecimal lineTotal(BigDecimal unitPrice, int quantity, BigDecimal discountPercentage) {
+        return toDecimal(lineTotal(toMinor(unitPrice), quantity, toBasisPoints(discountPercentage)));
+    }
+
+    /**
+     * Splits a non-negative amount over parts in proportion to their weights. Every part but
+     * the last is rounded down and the last takes the remainder, so the parts sum to the amount.
+     */
+    public static long[] split(long amount, int[] weights) {
+        long totalWeight = 0;
+        for (int weight : weights) {
+            totalWeight += weight;
+        }
+        long[] parts = new long[weights.length];
+        long assigned = 0;
+        for (int i = 0; i < weights.length - 1; i++) {
+            parts[i] = Math.multiplyExact(amount, (long) weights[i]) / totalWeight;
+            assigned += parts[i];
+        }
+        if (parts.length > 0) {
+            parts[parts.length - 1] = amount - assigned;
+        }
+        return parts;
+    }
+
+    // Ties round away from zero, as RoundingMode.HALF_UP does
+    static long divideHalfUp(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (2 * Math.abs(remainder) >= divisor) {
+            quotient += Long.signum(dividend);
+        }
+        return quotient;
+    }
+}
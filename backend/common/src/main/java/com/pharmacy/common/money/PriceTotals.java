@@ -0,0 +1,63 @@
+package com.pharmacy.common.money;
+
+import java.math.BigDecimal;
+
+/**
+ * Running subtotal (before discounts) and discount of a set of lines, in paise, priced
+ * by {@link Money}. Not thread-safe.
+ */
+public final class PriceTotals {
+
+    private long subtotal;
+    private long discount;
+
+    /**
+     * Adds a line and returns its total in paise.
+     */
+    public long add(long unitPrice, int quantity, int discountBasisPoints) {
+        long gross = Money.gross(unitPrice, quantity);
+        long lineDiscount = Money.discount(gross, discountBasisPoints);
+        subtotal = Math.addExact(subtotal, gross);
+        discount = Math.addExact(discount, lineDiscount);
+        return gross - lineDiscount;
+    }
+
+    public long add(BigDecimal unitPrice, int quantity, BigDecimal discountPercentage) {
+        return add(Money.toMinor(unitPrice), quantity, Money.toBasisPoints(discountPercentage));
+    }
+
+    /**
+     * Adds a line delivered in parts (an order line spread over stock batches) and returns
+     * each part's total in paise. The line is priced once, exactly as {@link #add} prices
+     * it, and its total is then split over the parts by quantity, so the parts add up to
+     * what the same line costs in the cart.
+     */
+    public long[] add(long unitPrice, int[] partQuantities, int discountBasisPoints) {
+        int quantity = 0;
+        for (int partQuantity : partQuantities) {
+            quantity = Math.addExact(quantity, partQuantity);
+        }
+        return Money.split(add(unitPrice, quantity, discountBasisPoints), partQuantities);
+    }
+
+    public BigDecimal[] add(BigDecimal unitPrice, int[] partQuantities, BigDecimal discountPercentage) {
+        long[] parts = add(Money.toMinor(unitPrice), partQuantities, Money.toBasisPoints(discountPercentage));
+        BigDecimal[] totals = new BigDecimal[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            totals[i] = Money.toDecimal(parts[i]);
+        }
+        return totals;
+    }
+
+    public BigDecimal subtotal() {
+        return Money.toDecimal(subtotal);
+    }
+
+    public BigDecimal discount() {
+        return Money.toDecimal(discount);
+    }
+
+    public BigDecimal total() {
+        return Money.toDecimal(subtotal - discount);
+    }
+}
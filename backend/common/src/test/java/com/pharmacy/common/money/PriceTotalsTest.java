@@ -0,0 +1,65 @@
+package com.pharmacy.common.money;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PriceTotalsTest {
+
+    @Test
+    void lineSplitOverBatchesIsDiscountedOnceForTheWholeLine() {
+        // 10.05 x 2 at 12.5%: the line's discount is 2.5125 -> 2.51, but each unit on its own
+        // would be discounted 1.25625 -> 1.26, charging 17.58 instead of the cart's 17.59
+        BigDecimal unitPrice = new BigDecimal("10.05");
+        BigDecimal discount = new BigDecimal("12.50");
+        assertThat(Money.lineTotal(unitPrice, 1, discount).multiply(BigDecimal.valueOf(2)))
+                .isEqualByComparingTo("17.58");
+
+        PriceTotals totals = new PriceTotals();
+        BigDecimal[] batches = totals.add(unitPrice, new int[] {1, 1}, discount);
+
+        assertThat(batches).containsExactly(new BigDecimal("8.79"), new BigDecimal("8.80"));
+        assertThat(totals.subtotal()).isEqualByComparingTo("20.10");
+        assertThat(totals.discount()).isEqualByComparingTo("2.51");
+        assertThat(totals.total()).isEqualByComparingTo(Money.lineTotal(unitPrice, 2, discount))
+                .isEqualByComparingTo("17.59");
+    }
+
+    @Test
+    void splitGivesTheRoundingRemainderToTheLastPart() {
+        assertThat(Money.split(1000, new int[] {1, 1, 1})).containsExactly(333, 333, 334);
+        assertThat(Money.split(1759, new int[] {3, 1})).containsExactly(1319, 440);
+        assertThat(Money.split(500, new int[] {4})).containsExactly(500);
+    }
+
+    @Test
+    void orderTotalsMatchCartTotalsWhenLinesAreSplitIntoBatches() {
+        Random random = new Random(42);
+        for (int order = 0; order < 1000; order++) {
+            PriceTotals cart = new PriceTotals();
+            PriceTotals checkout = new PriceTotals();
+            int lines = 1 + random.nextInt(8);
+            for (int line = 0; line < lines; line++) {
+                BigDecimal unitPrice = BigDecimal.valueOf(1 + random.nextInt(500_000), 2);
+                BigDecimal discount = BigDecimal.valueOf(random.nextInt(5001), 2);
+                int[] parts = new int[1 + random.nextInt(4)];
+                for (int i = 0; i < parts.length; i++) {
+                    parts[i] = 1 + random.nextInt(5);
+                }
+
+                long lineTotal = cart.add(unitPrice, Arrays.stream(parts).sum(), discount);
+                BigDecimal[] partTotals = checkout.add(unitPrice, parts, discount);
+
+                assertThat(Arrays.stream(partTotals).reduce(BigDecimal.ZERO, BigDecimal::add))
+                        .isEqualTo(Money.toDecimal(lineTotal));
+            }
+            assertThat(checkout.subtotal()).isEqualTo(cart.subtotal());
+            assertThat(checkout.discount()).isEqualTo(cart.discount());
+            assertThat(checkout.total()).isEqualTo(cart.total());
+        }
+    }
+}
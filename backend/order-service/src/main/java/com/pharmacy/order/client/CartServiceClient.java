@@ -0,0 +1,50 @@
+package com.pharmacy.order.client;
+
+import com.pharmacy.common.exception.PharmacyException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+import java.util.UUID;
+
+/**
+ * Calls to cart-service. Checkout reads the cart from the shared database, so a cart still
+ * held in cart-service's write-behind store has to be written out first.
+ */
+@Component
+@Slf4j
+public class CartServiceClient {
+
+    private final RestClient restClient;
+
+    public CartServiceClient(RestClient.Builder builder,
+                             @Value("${cart-service.url}") String baseUrl,
+                             @Value("${cart-service.timeout-ms:5000}") int timeoutMs) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(timeoutMs);
+        requestFactory.setReadTimeout(timeoutMs);
+        this.restClient = builder.baseUrl(baseUrl).requestFactory(requestFactory).build();
+    }
+
+    /**
+     * Makes cart-service write the user's cart to the database. Fails the checkout rather
+     * than let an order be placed from a cart that may be out of date.
+     */
+    public void flushCart(UUID userId) {
+        try {
+            restClient.post()
+                    .uri("/api/cart/flush")
+                    .header("X-User-Id", userId.toString())
+                    .retrieve()
+                    .toBodilessEntity();
+        } catch (RestClientException e) {
+            log.error("Could not flush cart for user: {}", userId, e);
+            throw new PharmacyException("Cart could not be saved, please try again",
+                    HttpStatus.SERVICE_UNAVAILABLE, "CART_UNAVAILABLE");
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.pharmacy.order.controller;
 
 import com.pharmacy.common.dto.ApiResponse;
+import com.pharmacy.order.client.CartServiceClient;
 import com.pharmacy.order.dto.CreateOrderRequest;
 import com.pharmacy.order.dto.OrderDto;
 import com.pharmacy.order.service.OrderService;
@@ -21,6 +22,7 @@ import java.util.UUID;
 public class OrderController {
     
     private final OrderService orderService;
+    private final CartServiceClient cartServiceClient;
     
     @PostMapping
     public ResponseEntity<ApiResponse<OrderDto>> createOrder(
@@ -31,6 +33,8 @@ public class OrderController {
             UUID userId = UUID.fromString(userIdHeader);
             log.info("Create order request for user: {}", userId);
             
+            // Before the order's transaction starts, so no connection is held while waiting
+            cartServiceClient.flushCart(userId);
             OrderDto order = orderService.createOrderFromCart(userId, request);
             
             return ResponseEntity.status(HttpStatus.CREATED)
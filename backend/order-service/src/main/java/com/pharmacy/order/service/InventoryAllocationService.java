@@ -0,0 +1,130 @@
+package com.pharmacy.order.service;
+
+import com.pharmacy.common.exception.PharmacyException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * First-expiry-first-out allocation of order quantities to inventory batches.
+ * Stock is taken with conditional updates (quantity_available >= requested), so concurrent
+ * checkouts only contend on the individual batch rows they actually decrement. Decrements
+ * are part of the caller's transaction and roll back with it.
+ */
+@Service
+@Slf4j
+public class InventoryAllocationService {
+    
+    // Conditional updates that lose a race re-read the batch and retry at most this often
+    private static final int MAX_ATTEMPTS_PER_BATCH = 5;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    /**
+     * Allocates the quantity across non-expired batches of the medicine, earliest expiry first,
+     * splitting it over as many batches as needed. Callers allocating several medicines in one
+     * transaction should do so in medicine id order so that concurrent checkouts lock rows in
+     * the same order.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<BatchAllocation> allocate(UUID medicineId, int quantity) {
+        List<BatchAllocation> allocations = new ArrayList<>();
+        int remaining = quantity;
+        
+        for (Batch batch : findAllocatableBatches(medicineId)) {
+            int available = batch.quantityAvailable();
+            for (int attempt = 0; attempt < MAX_ATTEMPTS_PER_BATCH && available > 0; attempt++) {
+                int take = Math.min(remaining, available);
+                if (tryDecrement(batch.id(), take)) {
+                    allocations.add(new BatchAllocation(batch.id(), take));
+                    remaining -= take;
+                    break;
+                }
+                // Another checkout took stock from this batch first; retry with what is left
+                available = currentAvailable(batch.id());
+            }
+            if (remaining == 0) {
+                return allocations;
+            }
+        }
+        
+        log.warn("Insufficient stock for medicine {}: requested {}, short by {}", medicineId, quantity, remaining);
+        throw new PharmacyException("Insufficient stock for one or more items in the cart",
+                HttpStatus.CONFLICT, "INSUFFICIENT_STOCK");
+    }
+    
+    private List<Batch> findAllocatableBatches(UUID medicineId) {
+        String sql = """
+            SELECT id, quantity_available
+            FROM medicine_inventory
+            WHERE medicine_id = :medicineId
+              AND expiry_date > CURRENT_DATE
+              AND quantity_available > 0
+            ORDER BY expiry_date, id
+            """;
+        
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = entityManager.createNativeQuery(sql)
+                .setParameter("medicineId", medicineId)
+                .getResultList();
+        
+        List<Batch> batches = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            batches.add(new Batch((UUID) row[0], ((Number) row[1]).intValue()));
+        }
+        return batches;
+    }
+    
+    /**
+     * Takes the quantity from the batch only if that much is still available. The row lock
+     * taken here is held until the order commits; a concurrent update of the same batch waits
+     * for it and then re-checks the condition against the committed quantity.
+     */
+    private boolean tryDecrement(UUID inventoryId, int quantity) {
+        String sql = """
+            UPDATE medicine_inventory
+            SET quantity_available = quantity_available - :quantity
+            WHERE id = :inventoryId
+              AND quantity_available >= :quantity
+              AND expiry_date > CURRENT_DATE
+            """;
+        return entityManager.createNativeQuery(sql)
+                .setParameter("quantity", quantity)
+                .setParameter("inventoryId", inventoryId)
+                .executeUpdate() == 1;
+    }
+    
+    private int currentAvailable(UUID inventoryId) {
+        String sql = """
+            SELECT quantity_available FROM medicine_inventory
+            WHERE id = :inventoryId AND expiry_date > CURRENT_DATE
+            """;
+        @SuppressWarnings("unchecked")
+        List<Object> result = entityManager.createNativeQuery(sql)
+                .setParameter("inventoryId", inventoryId)
+                .getResultList();
+        return result.isEmpty() ? 0 : ((Number) result.get(0)).intValue();
+    }
+    
+    /**
+     * Quantity taken from one batch.
+     */
+    public record BatchAllocation(
+            UUID inventoryId,
+            int quantity
+    ) {}
+    
+    private record Batch(
+            UUID id,
+            int quantityAvailable
+    ) {}
+}
@@ -1,6 +1,7 @@
 package com.pharmacy.order.service;
 
 import com.pharmacy.common.exception.PharmacyException;
+import com.pharmacy.common.money.PriceTotals;
 import com.pharmacy.order.dto.*;
 import com.pharmacy.order.model.Order;
 import com.pharmacy.order.model.OrderItem;
@@ -18,6 +19,8 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -29,6 +32,7 @@ public class OrderService {
     
     private final OrderRepository orderRepository;
     private final OrderItemRepository orderItemRepository;
+    private final InventoryAllocationService allocationService;
     
     @PersistenceContext
     private EntityManager entityManager;
@@ -79,18 +83,14 @@ public class OrderService {
             throw new PharmacyException("Cart is empty", HttpStatus.BAD_REQUEST);
         }
         
-        // Get cart items with medicine info
+        // Get cart items with the prices the patient saw in the cart
         String itemsSql = """
             SELECT 
-                ci.id,
                 ci.medicine_id,
                 ci.quantity,
                 ci.unit_price,
-                ci.discount_percentage,
-                m.name as medicine_name,
-                m.image_url as medicine_image_url
+                ci.discount_percentage
             FROM cart_items ci
-            JOIN medicines m ON ci.medicine_id = m.id
             WHERE ci.cart_id = :cartId
             """;
         
@@ -106,30 +106,13 @@ public class OrderService {
         List<CartItemData> items = results.stream()
                 .map(row -> new CartItemData(
                         (UUID) row[0],
-                        (UUID) row[1],
-                        ((Number) row[2]).intValue(),
-                        new BigDecimal(row[3].toString()),
-                        new BigDecimal(row[4].toString()),
-                        (String) row[5],
-                        (String) row[6]
+                        ((Number) row[1]).intValue(),
+                        (BigDecimal) row[2],
+                        row[3] != null ? (BigDecimal) row[3] : BigDecimal.ZERO
                 ))
                 .collect(Collectors.toList());
         
-        // Calculate totals
-        BigDecimal subtotal = items.stream()
-                .map(item -> item.unitPrice.multiply(BigDecimal.valueOf(item.quantity)))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        BigDecimal totalDiscount = items.stream()
-                .map(item -> {
-                    BigDecimal itemTotal = item.unitPrice.multiply(BigDecimal.valueOf(item.quantity));
-                    return itemTotal.multiply(item.discountPercentage).divide(BigDecimal.valueOf(100));
-                })
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        BigDecimal total = subtotal.subtract(totalDiscount);
-        
-        return new CartData(cartId, items, subtotal, totalDiscount, total);
+        return new CartData(cartId, items);
     }
     
     /**
@@ -160,6 +143,20 @@ public class OrderService {
             throw new PharmacyException("Cart is empty", HttpStatus.BAD_REQUEST);
         }
         
+        // Allocate stock batch by batch (FEFO) before anything is written. Medicines are
+        // processed in id order so concurrent checkouts lock batch rows in the same order.
+        List<CartItemData> cartItems = new ArrayList<>(cartData.items());
+        cartItems.sort(Comparator.comparing(CartItemData::medicineId));
+        
+        // Each cart line is priced once, exactly as the cart prices it, so the order totals
+        // match what the patient confirmed even when a line is split over several batches
+        PriceTotals totals = new PriceTotals();
+        List<OrderItem> orderItems = new ArrayList<>();
+        for (CartItemData cartItem : cartItems) {
+            orderItems.addAll(toOrderItems(cartItem,
+                    allocationService.allocate(cartItem.medicineId(), cartItem.quantity()), totals));
+        }
+        
         // Generate order number
         String orderNumber = generateOrderNumber();
         
@@ -168,35 +165,21 @@ public class OrderService {
         order.setOrderNumber(orderNumber);
         order.setPatientId(patientId);
         order.setStatus(Order.OrderStatus.PENDING);
-        order.setSubtotal(cartData.subtotal());
-        order.setDiscountAmount(cartData.totalDiscount());
+        order.setSubtotal(totals.subtotal());
+        order.setDiscountAmount(totals.discount());
         order.setTaxAmount(BigDecimal.ZERO); // Will be calculated later
         order.setShippingCharges(BigDecimal.ZERO); // Will be calculated later
-        order.setTotalAmount(cartData.total());
+        order.setTotalAmount(totals.total());
         order.setPaymentStatus(Order.PaymentStatus.PENDING);
         order.setShippingAddress(request.getShippingAddress());
         
         order = orderRepository.save(order);
         
         // Create order items
-        List<OrderItem> savedItems = new java.util.ArrayList<>();
-        for (CartItemData cartItem : cartData.items()) {
-            OrderItem orderItem = new OrderItem();
+        for (OrderItem orderItem : orderItems) {
             orderItem.setOrder(order);
-            orderItem.setMedicineId(cartItem.medicineId());
-            orderItem.setQuantity(cartItem.quantity());
-            orderItem.setUnitPrice(cartItem.unitPrice());
-            orderItem.setDiscountPercentage(cartItem.discountPercentage());
-            
-            // Calculate total price
-            BigDecimal itemTotal = cartItem.unitPrice().multiply(BigDecimal.valueOf(cartItem.quantity()));
-            BigDecimal itemDiscount = itemTotal.multiply(cartItem.discountPercentage())
-                    .divide(BigDecimal.valueOf(100));
-            orderItem.setTotalPrice(itemTotal.subtract(itemDiscount));
-            
-            OrderItem savedItem = orderItemRepository.save(orderItem);
-            savedItems.add(savedItem);
         }
+        List<OrderItem> savedItems = orderItemRepository.saveAll(orderItems);
         
         // Set items on order for DTO conversion
         order.setItems(savedItems);
@@ -302,23 +285,43 @@ public class OrderService {
                 .build();
     }
     
+    /**
+     * One order item per batch allocation of a cart line, at the cart line's price. The line
+     * is added to the totals once and its total divided over the items.
+     */
+    private static List<OrderItem> toOrderItems(CartItemData cartItem,
+                                                List<InventoryAllocationService.BatchAllocation> allocations,
+                                                PriceTotals totals) {
+        int[] quantities = allocations.stream()
+                .mapToInt(InventoryAllocationService.BatchAllocation::quantity)
+                .toArray();
+        BigDecimal[] itemTotals = totals.add(cartItem.unitPrice(), quantities, cartItem.discountPercentage());
+        
+        List<OrderItem> orderItems = new ArrayList<>(allocations.size());
+        for (int i = 0; i < allocations.size(); i++) {
+            OrderItem orderItem = new OrderItem();
+            orderItem.setMedicineId(cartItem.medicineId());
+            orderItem.setInventoryId(allocations.get(i).inventoryId());
+            orderItem.setQuantity(quantities[i]);
+            orderItem.setUnitPrice(cartItem.unitPrice());
+            orderItem.setDiscountPercentage(cartItem.discountPercentage());
+            orderItem.setTotalPrice(itemTotals[i]);
+            orderItems.add(orderItem);
+        }
+        return orderItems;
+    }
+    
     // Helper records for cart data
     private record CartData(
             UUID cartId,
-            List<CartItemData> items,
-            BigDecimal subtotal,
-            BigDecimal totalDiscount,
-            BigDecimal total
+            List<CartItemData> items
     ) {}
     
     private record CartItemData(
-            UUID id,
             UUID medicineId,
-            Integer quantity,
+            int quantity,
             BigDecimal unitPrice,
-            BigDecimal discountPercentage,
-            String medicineName,
-            String medicineImageUrl
+            BigDecimal discountPercentage
     ) {}
 }
 
@@ -0,0 +1,182 @@
+-- Add Catalog Change Feed Migration
+-- Run this script to add the catalog change log and its triggers to existing database
+-- Usage: docker exec -i pharmacy-postgres psql -U pharmacy_user -d pharmacy_db < database/migrate_add_catalog_changes.sql
+
+-- Catalog change feed (published from catalog_change_queue, ids in commit order)
+CREATE TABLE IF NOT EXISTS catalog_changes (
+    id BIGINT PRIMARY KEY,
+    medicine_id UUID NOT NULL,
+    entity VARCHAR(20) NOT NULL CHECK (entity IN ('MEDICINE', 'INVENTORY')),
+    change_type VARCHAR(20) NOT NULL CHECK (change_type IN ('CREATED', 'UPDATED', 'DISCONTINUED', 'DELETED', 'EXPIRED')),
+    changed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE SEQUENCE IF NOT EXISTS catalog_change_seq;
+
+-- Highest catalog_changes id removed by pruning (one row); sync tokens below it have expired.
+-- On a database that has already pruned, everything below the oldest retained change is
+-- gone, or everything ever published when none is left
+CREATE TABLE IF NOT EXISTS catalog_change_watermark (
+    singleton BOOLEAN PRIMARY KEY DEFAULT TRUE CHECK (singleton),
+    pruned_through BIGINT NOT NULL DEFAULT 0
+);
+
+INSERT INTO catalog_change_watermark (pruned_through)
+SELECT COALESCE((SELECT MIN(id) - 1 FROM catalog_changes),
+                (SELECT CASE WHEN is_called THEN last_value ELSE 0 END FROM catalog_change_seq))
+ON CONFLICT (singleton) DO NOTHING;
+
+-- Changes waiting to be published to catalog_changes (appended by triggers without locking)
+CREATE TABLE IF NOT EXISTS catalog_change_queue (
+    seq BIGSERIAL PRIMARY KEY,
+    medicine_id UUID NOT NULL,
+    entity VARCHAR(20) NOT NULL,
+    change_type VARCHAR(20) NOT NULL,
+    changed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_catalog_changes_changed_at ON catalog_changes(changed_at);
+
+-- The catalog version is now the latest change id; drop the earlier version counter if present
+DROP TRIGGER IF EXISTS bump_catalog_version_medicines ON medicines;
+DROP TRIGGER IF EXISTS bump_catalog_version_medicine_inventory ON medicine_inventory;
+DROP FUNCTION IF EXISTS bump_catalog_version();
+DROP SEQUENCE IF EXISTS catalog_version_seq;
+
+-- Function to queue an EXPIRED change for every summary recomputed after its earliest batch
+-- expired, whether by the daily roll-forward or by a later change to the medicine's batches
+CREATE OR REPLACE FUNCTION queue_expired_inventory_changes()
+RETURNS TRIGGER AS $$
+BEGIN
+    INSERT INTO catalog_change_queue (medicine_id, entity, change_type)
+    SELECT n.medicine_id, 'INVENTORY', 'EXPIRED'
+    FROM new_rows n JOIN old_rows o ON o.medicine_id = n.medicine_id
+    WHERE o.next_expiry_date <= CURRENT_DATE;
+    RETURN NULL;
+END;
+$$ language 'plpgsql';
+
+-- Function to queue the medicines changed by a statement (one trigger per event, each
+-- with the transition tables that event has)
+CREATE OR REPLACE FUNCTION queue_medicine_changes()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO catalog_change_queue (medicine_id, entity, change_type)
+        SELECT id, 'MEDICINE', 'CREATED' FROM new_rows;
+    ELSIF TG_OP = 'UPDATE' THEN
+        INSERT INTO catalog_change_queue (medicine_id, entity, change_type)
+        SELECT n.id, 'MEDICINE',
+               CASE WHEN n.status = 'DISCONTINUED' AND o.status <> 'DISCONTINUED' THEN 'DISCONTINUED' ELSE 'UPDATED' END
+        FROM new_rows n JOIN old_rows o ON o.id = n.id;
+    ELSE
+        INSERT INTO catalog_change_queue (medicine_id, entity, change_type)
+        SELECT id, 'MEDICINE', 'DELETED' FROM old_rows;
+    END IF;
+    RETURN NULL;
+END;
+$$ language 'plpgsql';
+
+-- Function to queue one change per medicine whose batches a statement changed
+CREATE OR REPLACE FUNCTION queue_inventory_changes()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO catalog_change_queue (medicine_id, entity, change_type)
+        SELECT DISTINCT medicine_id, 'INVENTORY', 'CREATED' FROM new_rows;
+    ELSIF TG_OP = 'UPDATE' THEN
+        INSERT INTO catalog_change_queue (medicine_id, entity, change_type)
+        SELECT medicine_id, 'INVENTORY', 'UPDATED'
+        FROM (SELECT medicine_id FROM new_rows UNION SELECT medicine_id FROM old_rows) changed;
+    ELSE
+        INSERT INTO catalog_change_queue (medicine_id, entity, change_type)
+        SELECT DISTINCT medicine_id, 'INVENTORY', 'DELETED' FROM old_rows;
+    END IF;
+    RETURN NULL;
+END;
+$$ language 'plpgsql';
+
+-- Function to move committed queued changes into catalog_changes. Only this publisher takes
+-- the advisory lock, so publications run one at a time and each one's ids are committed
+-- before the next assigns more: ids become visible in commit order, and a reader that sees
+-- id N has seen every id below N. Transactions writing the catalog never wait on it.
+CREATE OR REPLACE FUNCTION publish_catalog_changes(p_limit INTEGER)
+RETURNS INTEGER AS $$
+DECLARE
+    published INTEGER;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('catalog_changes'));
+    WITH batch AS (
+        DELETE FROM catalog_change_queue
+        WHERE seq IN (SELECT seq FROM catalog_change_queue ORDER BY seq LIMIT p_limit)
+        RETURNING seq, medicine_id, entity, change_type, changed_at
+    )
+    INSERT INTO catalog_changes (id, medicine_id, entity, change_type, changed_at)
+    SELECT nextval('catalog_change_seq'), medicine_id, entity, change_type, changed_at
+    FROM (SELECT * FROM batch ORDER BY seq) ordered;
+    GET DIAGNOSTICS published = ROW_COUNT;
+    RETURN published;
+END;
+$$ language 'plpgsql';
+
+-- Function to delete changes older than the cutoff. The highest id it deletes is recorded in
+-- catalog_change_watermark in the same transaction, so tokens behind it are known to have
+-- expired even once no change is left to compare them with.
+CREATE OR REPLACE FUNCTION prune_catalog_changes(p_cutoff TIMESTAMP)
+RETURNS INTEGER AS $$
+DECLARE
+    pruned INTEGER;
+    last_pruned BIGINT;
+BEGIN
+    WITH deleted AS (
+        DELETE FROM catalog_changes WHERE changed_at < p_cutoff RETURNING id
+    )
+    SELECT COUNT(*), MAX(id) INTO pruned, last_pruned FROM deleted;
+    IF last_pruned IS NOT NULL THEN
+        UPDATE catalog_change_watermark SET pruned_through = GREATEST(pruned_through, last_pruned);
+    END IF;
+    RETURN pruned;
+END;
+$$ language 'plpgsql';
+
+-- Triggers for the catalog change feed (earlier per-row deferred triggers are replaced)
+DROP TRIGGER IF EXISTS record_catalog_change_medicines ON medicines;
+DROP TRIGGER IF EXISTS record_catalog_change_medicine_inventory ON medicine_inventory;
+DROP FUNCTION IF EXISTS record_catalog_change();
+
+DROP TRIGGER IF EXISTS queue_catalog_changes_medicines_insert ON medicines;
+CREATE TRIGGER queue_catalog_changes_medicines_insert AFTER INSERT ON medicines
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION queue_medicine_changes();
+
+DROP TRIGGER IF EXISTS queue_catalog_changes_medicines_update ON medicines;
+CREATE TRIGGER queue_catalog_changes_medicines_update AFTER UPDATE ON medicines
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION queue_medicine_changes();
+
+DROP TRIGGER IF EXISTS queue_catalog_changes_medicines_delete ON medicines;
+CREATE TRIGGER queue_catalog_changes_medicines_delete AFTER DELETE ON medicines
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION queue_medicine_changes();
+
+DROP TRIGGER IF EXISTS queue_catalog_changes_medicine_inventory_insert ON medicine_inventory;
+CREATE TRIGGER queue_catalog_changes_medicine_inventory_insert AFTER INSERT ON medicine_inventory
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION queue_inventory_changes();
+
+DROP TRIGGER IF EXISTS queue_catalog_changes_medicine_inventory_update ON medicine_inventory;
+CREATE TRIGGER queue_catalog_changes_medicine_inventory_update AFTER UPDATE ON medicine_inventory
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION queue_inventory_changes();
+
+DROP TRIGGER IF EXISTS queue_catalog_changes_medicine_inventory_delete ON medicine_inventory;
+CREATE TRIGGER queue_catalog_changes_medicine_inventory_delete AFTER DELETE ON medicine_inventory
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION queue_inventory_changes();
+
+-- Expired batches are reported when roll_forward_inventory_summary (or any later refresh)
+-- recomputes the summary, so the roll-forward itself stays as migrate_add_inventory_summary.sql defines it
+DROP TRIGGER IF EXISTS queue_catalog_changes_inventory_summary_update ON medicine_inventory_summary;
+CREATE TRIGGER queue_catalog_changes_inventory_summary_update AFTER UPDATE ON medicine_inventory_summary
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION queue_expired_inventory_changes();
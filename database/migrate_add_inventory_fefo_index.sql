@@ -0,0 +1,6 @@
+-- Add Inventory FEFO Index Migration
+-- Run this script to add the first-expiry-first-out allocation index to existing database
+-- Usage: docker exec -i pharmacy-postgres psql -U pharmacy_user -d pharmacy_db < database/migrate_add_inventory_fefo_index.sql
+
+-- Batches of a medicine in expiry order, used by order batch allocation
+CREATE INDEX IF NOT EXISTS idx_medicine_inventory_fefo ON medicine_inventory(medicine_id, expiry_date);
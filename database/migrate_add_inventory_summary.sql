@@ -0,0 +1,129 @@
+-- Add Medicine Inventory Summary Migration
+-- Run this script to add the per-medicine inventory summary to existing database
+-- Usage: docker exec -i pharmacy-postgres psql -U pharmacy_user -d pharmacy_db < database/migrate_add_inventory_summary.sql
+
+-- Per-medicine inventory summary (maintained by triggers on medicine_inventory)
+CREATE TABLE IF NOT EXISTS medicine_inventory_summary (
+    medicine_id UUID PRIMARY KEY REFERENCES medicines(id) ON DELETE CASCADE,
+    total_stock BIGINT NOT NULL DEFAULT 0,
+    min_price DECIMAL(10, 2),
+    min_mrp DECIMAL(10, 2),
+    max_discount DECIMAL(5, 2),
+    best_unit_price DECIMAL(10, 2),
+    best_discount_percentage DECIMAL(5, 2),
+    next_expiry_date DATE,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_medicine_inventory_summary_next_expiry ON medicine_inventory_summary(next_expiry_date);
+
+-- Function to recompute the inventory summaries of a set of medicines from their non-expired batches
+CREATE OR REPLACE FUNCTION refresh_inventory_summaries(p_medicine_ids UUID[])
+RETURNS VOID AS $$
+BEGIN
+    DELETE FROM medicine_inventory_summary s
+    WHERE s.medicine_id = ANY(p_medicine_ids)
+      AND NOT EXISTS (SELECT 1 FROM medicines m WHERE m.id = s.medicine_id);
+
+    -- Lock the summary rows first, in id order, so concurrent refreshes of the same medicines
+    -- run one after another without deadlocking, and the aggregate below (a new statement)
+    -- sees committed batches
+    INSERT INTO medicine_inventory_summary (medicine_id)
+        SELECT id FROM medicines WHERE id = ANY(p_medicine_ids) ORDER BY id
+        ON CONFLICT (medicine_id) DO NOTHING;
+    PERFORM 1 FROM medicine_inventory_summary
+        WHERE medicine_id = ANY(p_medicine_ids) ORDER BY medicine_id FOR UPDATE;
+
+    UPDATE medicine_inventory_summary s SET
+        total_stock = x.total_stock,
+        min_price = x.min_price,
+        min_mrp = x.min_mrp,
+        max_discount = x.max_discount,
+        best_unit_price = x.best_unit_price,
+        best_discount_percentage = x.best_discount_percentage,
+        next_expiry_date = x.next_expiry_date,
+        updated_at = CURRENT_TIMESTAMP
+    FROM (
+        SELECT ids.medicine_id, agg.*,
+               best.unit_price AS best_unit_price,
+               best.discount_percentage AS best_discount_percentage
+        FROM unnest(p_medicine_ids) AS ids(medicine_id)
+        CROSS JOIN LATERAL (
+            SELECT COALESCE(SUM(quantity_available), 0) AS total_stock,
+                   MIN(unit_price) FILTER (WHERE quantity_available > 0) AS min_price,
+                   MIN(mrp) FILTER (WHERE quantity_available > 0) AS min_mrp,
+                   MAX(discount_percentage) FILTER (WHERE quantity_available > 0) AS max_discount,
+                   MIN(expiry_date) AS next_expiry_date
+            FROM medicine_inventory
+            WHERE medicine_id = ids.medicine_id AND expiry_date > CURRENT_DATE
+        ) agg
+        LEFT JOIN LATERAL (
+            SELECT unit_price, discount_percentage
+            FROM medicine_inventory
+            WHERE medicine_id = ids.medicine_id AND expiry_date > CURRENT_DATE AND quantity_available > 0
+            ORDER BY unit_price ASC, discount_percentage DESC
+            LIMIT 1
+        ) best ON TRUE
+    ) x
+    WHERE s.medicine_id = x.medicine_id;
+END;
+$$ language 'plpgsql';
+
+-- Function to recompute one medicine's inventory summary
+CREATE OR REPLACE FUNCTION refresh_medicine_inventory_summary(p_medicine_id UUID)
+RETURNS VOID AS $$
+BEGIN
+    PERFORM refresh_inventory_summaries(ARRAY[p_medicine_id]);
+END;
+$$ language 'plpgsql';
+
+-- Function to refresh the summaries of every medicine whose batches a statement changed, once
+-- per statement (one trigger per event, each with the transition tables that event has)
+CREATE OR REPLACE FUNCTION refresh_inventory_summaries_on_change()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        PERFORM refresh_inventory_summaries(ARRAY(SELECT DISTINCT medicine_id FROM new_rows));
+    ELSIF TG_OP = 'UPDATE' THEN
+        PERFORM refresh_inventory_summaries(ARRAY(
+            SELECT medicine_id FROM new_rows UNION SELECT medicine_id FROM old_rows));
+    ELSE
+        PERFORM refresh_inventory_summaries(ARRAY(SELECT DISTINCT medicine_id FROM old_rows));
+    END IF;
+    RETURN NULL;
+END;
+$$ language 'plpgsql';
+
+-- Function to recompute summaries whose earliest batch has expired (run daily after midnight)
+CREATE OR REPLACE FUNCTION roll_forward_inventory_summary()
+RETURNS INTEGER AS $$
+DECLARE
+    refreshed INTEGER := 0;
+    r RECORD;
+BEGIN
+    FOR r IN SELECT medicine_id FROM medicine_inventory_summary WHERE next_expiry_date <= CURRENT_DATE LOOP
+        PERFORM refresh_medicine_inventory_summary(r.medicine_id);
+        refreshed := refreshed + 1;
+    END LOOP;
+    RETURN refreshed;
+END;
+$$ language 'plpgsql';
+
+-- Triggers
+DROP TRIGGER IF EXISTS refresh_medicine_inventory_summary ON medicine_inventory;
+DROP FUNCTION IF EXISTS refresh_inventory_summary_on_change();
+DROP TRIGGER IF EXISTS refresh_inventory_summaries_insert ON medicine_inventory;
+DROP TRIGGER IF EXISTS refresh_inventory_summaries_update ON medicine_inventory;
+DROP TRIGGER IF EXISTS refresh_inventory_summaries_delete ON medicine_inventory;
+CREATE TRIGGER refresh_inventory_summaries_insert AFTER INSERT ON medicine_inventory
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION refresh_inventory_summaries_on_change();
+CREATE TRIGGER refresh_inventory_summaries_update AFTER UPDATE ON medicine_inventory
+    REFERENCING NEW TABLE AS new_rows OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION refresh_inventory_summaries_on_change();
+CREATE TRIGGER refresh_inventory_summaries_delete AFTER DELETE ON medicine_inventory
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION refresh_inventory_summaries_on_change();
+
+-- Initial population
+SELECT refresh_inventory_summaries(ARRAY(SELECT id FROM medicines));
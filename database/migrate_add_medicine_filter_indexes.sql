@@ -0,0 +1,8 @@
+-- Add Medicine Filter Indexes Migration
+-- Run this script to add composite indexes for catalog filters to existing database
+-- Usage: docker exec -i pharmacy-postgres psql -U pharmacy_user -d pharmacy_db < database/migrate_add_medicine_filter_indexes.sql
+
+-- Composite indexes for status + enum filters, ordered by name for sorted listings
+CREATE INDEX IF NOT EXISTS idx_medicines_status_form_name ON medicines(status, form, name);
+CREATE INDEX IF NOT EXISTS idx_medicines_status_schedule_name ON medicines(status, schedule, name);
+CREATE INDEX IF NOT EXISTS idx_medicines_status_rx_name ON medicines(status, prescription_required, name);
@@ -86,6 +86,47 @@ CREATE TABLE medicine_inventory (
     UNIQUE(medicine_id, batch_number)
 );
 
+-- Per-medicine inventory summary (maintained by triggers on medicine_inventory)
+CREATE TABLE medicine_inventory_summary (
+    medicine_id UUID PRIMARY KEY REFERENCES medicines(id) ON DELETE CASCADE,
+    total_stock BIGINT NOT NULL DEFAULT 0,
+    min_price DECIMAL(10, 2),
+    min_mrp DECIMAL(10, 2),
+    max_discount DECIMAL(5, 2),
+    best_unit_price DECIMAL(10, 2),
+    best_discount_percentage DECIMAL(5, 2),
+    next_expiry_date DATE,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Catalog change feed (published from catalog_change_queue, ids in commit order)
+CREATE TABLE catalog_changes (
+    id BIGINT PRIMARY KEY,
+    medicine_id UUID NOT NULL,
+    entity VARCHAR(20) NOT NULL CHECK (entity IN ('MEDICINE', 'INVENTORY')),
+    change_type VARCHAR(20) NOT NULL CHECK (change_type IN ('CREATED', 'UPDATED', 'DISCONTINUED', 'DELETED', 'EXPIRED')),
+    changed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE SEQUENCE catalog_change_seq;
+
+-- Highest catalog_changes id removed by pruning (one row); sync tokens below it have expired
+CREATE TABLE catalog_change_watermark (
+    singleton BOOLEAN PRIMARY KEY DEFAULT TRUE CHECK (singleton),
+    pruned_through BIGINT NOT NULL DEFAULT 0
+);
+
+INSERT INTO catalog_change_watermark DEFAULT VALUES;
+
+-- Changes waiting to be published to catalog_changes (appended by triggers without locking)
+CREATE TABLE catalog_change_queue (
+    seq BIGSERIAL PRIMARY KEY,
+    medicine_id UUID NOT NULL,
+    entity VARCHAR(20) NOT NULL,
+    change_type VARCHAR(20) NOT NULL,
+    changed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
 -- Shopping Cart
 CREATE TABLE carts (
     id UUID PRIMARY KEY DEFAULT uuid_generate_v4(),
@@ -214,6 +255,12 @@ CREATE INDEX idx_patients_user_id ON patients(user_id);
 CREATE INDEX idx_medicines_name ON medicines(name);
 CREATE INDEX idx_medicines_generic_name ON medicines(generic_name);
 CREATE INDEX idx_medicines_status ON medicines(status);
+CREATE INDEX idx_medicines_status_form_name ON medicines(status, form, name);
+CREATE INDEX idx_medicines_status_schedule_name ON medicines(status, schedule, name);
+CREATE INDEX idx_medicines_status_rx_name ON medicines(status, prescription_required, name);
+CREATE INDEX idx_medicine_inventory_fefo ON medicine_inventory(medicine_id, expiry_date);
+CREATE INDEX idx_medicine_inventory_summary_next_expiry ON medicine_inventory_summary(next_expiry_date);
+CREATE INDEX idx_catalog_changes_changed_at ON catalog_changes(changed_at);
 CREATE INDEX idx_cart_items_cart_id ON cart_items(cart_id);
 CREATE INDEX idx_cart_items_medicine_id ON cart_items(medicine_id);
 CREATE INDEX idx_carts_patient_id ON carts(patient_id);
@@ -272,3 +319,230 @@ CREATE TRIGGER update_orders_updated_at BEFORE UPDATE ON orders
 CREATE TRIGGER update_refills_updated_at BEFORE UPDATE ON refills
     FOR EACH ROW EXECUTE FUNCTION update_updated_at_column();
 
+-- Function to recompute the inventory summaries of a set of medicines from their non-expired batches
+CREATE OR REPLACE FUNCTION refresh_inventory_summaries(p_medicine_ids UUID[])
+RETURNS VOID AS $$
+BEGIN
+    DELETE FROM medicine_inventory_summary s
+    WHERE s.medicine_id = ANY(p_medicine_ids)
+      AND NOT EXISTS (SELECT 1 FROM medicines m WHERE m.id = s.medicine_id);
+
+    -- Lock the summary rows first, in id order, so concurrent refreshes of the same medicines
+    -- run one after another without deadlocking, and the aggregate below (a new statement)
+    -- sees committed batches
+    INSERT INTO medicine_inventory_summary (medicine_id)
+        SELECT id FROM medicines WHERE id = ANY(p_medicine_ids) ORDER BY id
+        ON CONFLICT (medicine_id) DO NOTHING;
+    PERFORM 1 FROM medicine_inventory_summary
+        WHERE medicine_id = ANY(p_medicine_ids) ORDER BY medicine_id FOR UPDATE;
+
+    UPDATE medicine_inventory_summary s SET
+        total_stock = x.total_stock,
+        min_price = x.min_price,
+        min_mrp = x.min_mrp,
+        max_discount = x.max_discount,
+        best_unit_price = x.best_unit_price,
+        best_discount_percentage = x.best_discount_percentage,
+        next_expiry_date = x.next_expiry_date,
+        updated_at = CURRENT_TIMESTAMP
+    FROM (
+        SELECT ids.medicine_id, agg.*,
+               best.unit_price AS best_unit_price,
+               best.discount_percentage AS best_discount_percentage
+        FROM unnest(p_medicine_ids) AS ids(medicine_id)
+        CROSS JOIN LATERAL (
+            SELECT COALESCE(SUM(quantity_available), 0) AS total_stock,
+                   MIN(unit_price) FILTER (WHERE quantity_available > 0) AS min_price,
+                   MIN(mrp) FILTER (WHERE quantity_available > 0) AS min_mrp,
+                   MAX(discount_percentage) FILTER (WHERE quantity_available > 0) AS max_discount,
+                   MIN(expiry_date) AS next_expiry_date
+            FROM medicine_inventory
+            WHERE medicine_id = ids.medicine_id AND expiry_date > CURRENT_DATE
+        ) agg
+        LEFT JOIN LATERAL (
+            SELECT unit_price, discount_percentage
+            FROM medicine_inventory
+            WHERE medicine_id = ids.medicine_id AND expiry_date > CURRENT_DATE AND quantity_available > 0
+            ORDER BY unit_price ASC, discount_percentage DESC
+            LIMIT 1
+        ) best ON TRUE
+    ) x
+    WHERE s.medicine_id = x.medicine_id;
+END;
+$$ language 'plpgsql';
+
+-- Function to recompute one medicine's inventory summary
+CREATE OR REPLACE FUNCTION refresh_medicine_inventory_summary(p_medicine_id UUID)
+RETURNS VOID AS $$
+BEGIN
+    PERFORM refresh_inventory_summaries(ARRAY[p_medicine_id]);
+END;
+$$ language 'plpgsql';
+
+-- Function to refresh the summaries of every medicine whose batches a statement changed, once
+-- per statement (one trigger per event, each with the transition tables that event has)
+CREATE OR REPLACE FUNCTION refresh_inventory_summaries_on_change()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        PERFORM refresh_inventory_summaries(ARRAY(SELECT DISTINCT medicine_id FROM new_rows));
+    ELSIF TG_OP = 'UPDATE' THEN
+        PERFORM refresh_inventory_summaries(ARRAY(
+            SELECT medicine_id FROM new_rows UNION SELECT medicine_id FROM old_rows));
+    ELSE
+        PERFORM refresh_inventory_summaries(ARRAY(SELECT DISTINCT medicine_id FROM old_rows));
+    END IF;
+    RETURN NULL;
+END;
+$$ language 'plpgsql';
+
+-- Function to queue an EXPIRED change for every summary recomputed after its earliest batch
+-- expired, whether by the daily roll-forward or by a later change to the medicine's batches
+CREATE OR REPLACE FUNCTION queue_expired_inventory_changes()
+RETURNS TRIGGER AS $$
+BEGIN
+    INSERT INTO catalog_change_queue (medicine_id, entity, change_type)
+    SELECT n.medicine_id, 'INVENTORY', 'EXPIRED'
+    FROM new_rows n JOIN old_rows o ON o.medicine_id = n.medicine_id
+    WHERE o.next_expiry_date <= CURRENT_DATE;
+    RETURN NULL;
+END;
+$$ language 'plpgsql';
+
+-- Function to queue the medicines changed by a statement (one trigger per event, each
+-- with the transition tables that event has)
+CREATE OR REPLACE FUNCTION queue_medicine_changes()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO catalog_change_queue (medicine_id, entity, change_type)
+        SELECT id, 'MEDICINE', 'CREATED' FROM new_rows;
+    ELSIF TG_OP = 'UPDATE' THEN
+        INSERT INTO catalog_change_queue (medicine_id, entity, change_type)
+        SELECT n.id, 'MEDICINE',
+               CASE WHEN n.status = 'DISCONTINUED' AND o.status <> 'DISCONTINUED' THEN 'DISCONTINUED' ELSE 'UPDATED' END
+        FROM new_rows n JOIN old_rows o ON o.id = n.id;
+    ELSE
+        INSERT INTO catalog_change_queue (medicine_id, entity, change_type)
+        SELECT id, 'MEDICINE', 'DELETED' FROM old_rows;
+    END IF;
+    RETURN NULL;
+END;
+$$ language 'plpgsql';
+
+-- Function to queue one change per medicine whose batches a statement changed
+CREATE OR REPLACE FUNCTION queue_inventory_changes()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO catalog_change_queue (medicine_id, entity, change_type)
+        SELECT DISTINCT medicine_id, 'INVENTORY', 'CREATED' FROM new_rows;
+    ELSIF TG_OP = 'UPDATE' THEN
+        INSERT INTO catalog_change_queue (medicine_id, entity, change_type)
+        SELECT medicine_id, 'INVENTORY', 'UPDATED'
+        FROM (SELECT medicine_id FROM new_rows UNION SELECT medicine_id FROM old_rows) changed;
+    ELSE
+        INSERT INTO catalog_change_queue (medicine_id, entity, change_type)
+        SELECT DISTINCT medicine_id, 'INVENTORY', 'DELETED' FROM old_rows;
+    END IF;
+    RETURN NULL;
+END;
+$$ language 'plpgsql';
+
+-- Function to move committed queued changes into catalog_changes. Only this publisher takes
+-- the advisory lock, so publications run one at a time and each one's ids are committed
+-- before the next assigns more: ids become visible in commit order, and a reader that sees
+-- id N has seen every id below N. Transactions writing the catalog never wait on it.
+CREATE OR REPLACE FUNCTION publish_catalog_changes(p_limit INTEGER)
+RETURNS INTEGER AS $$
+DECLARE
+    published INTEGER;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('catalog_changes'));
+    WITH batch AS (
+        DELETE FROM catalog_change_queue
+        WHERE seq IN (SELECT seq FROM catalog_change_queue ORDER BY seq LIMIT p_limit)
+        RETURNING seq, medicine_id, entity, change_type, changed_at
+    )
+    INSERT INTO catalog_changes (id, medicine_id, entity, change_type, changed_at)
+    SELECT nextval('catalog_change_seq'), medicine_id, entity, change_type, changed_at
+    FROM (SELECT * FROM batch ORDER BY seq) ordered;
+    GET DIAGNOSTICS published = ROW_COUNT;
+    RETURN published;
+END;
+$$ language 'plpgsql';
+
+-- Function to delete changes older than the cutoff. The highest id it deletes is recorded in
+-- catalog_change_watermark in the same transaction, so tokens behind it are known to have
+-- expired even once no change is left to compare them with.
+CREATE OR REPLACE FUNCTION prune_catalog_changes(p_cutoff TIMESTAMP)
+RETURNS INTEGER AS $$
+DECLARE
+    pruned INTEGER;
+    last_pruned BIGINT;
+BEGIN
+    WITH deleted AS (
+        DELETE FROM catalog_changes WHERE changed_at < p_cutoff RETURNING id
+    )
+    SELECT COUNT(*), MAX(id) INTO pruned, last_pruned FROM deleted;
+    IF last_pruned IS NOT NULL THEN
+        UPDATE catalog_change_watermark SET pruned_through = GREATEST(pruned_through, last_pruned);
+    END IF;
+    RETURN pruned;
+END;
+$$ language 'plpgsql';
+
+-- Function to recompute summaries whose earliest batch has expired (run daily after midnight)
+CREATE OR REPLACE FUNCTION roll_forward_inventory_summary()
+RETURNS INTEGER AS $$
+DECLARE
+    refreshed INTEGER := 0;
+    r RECORD;
+BEGIN
+    FOR r IN SELECT medicine_id FROM medicine_inventory_summary WHERE next_expiry_date <= CURRENT_DATE LOOP
+        PERFORM refresh_medicine_inventory_summary(r.medicine_id);
+        refreshed := refreshed + 1;
+    END LOOP;
+    RETURN refreshed;
+END;
+$$ language 'plpgsql';
+
+-- Triggers for inventory summary (fired once per statement)
+CREATE TRIGGER refresh_inventory_summaries_insert AFTER INSERT ON medicine_inventory
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION refresh_inventory_summaries_on_change();
+CREATE TRIGGER refresh_inventory_summaries_update AFTER UPDATE ON medicine_inventory
+    REFERENCING NEW TABLE AS new_rows OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION refresh_inventory_summaries_on_change();
+CREATE TRIGGER refresh_inventory_summaries_delete AFTER DELETE ON medicine_inventory
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION refresh_inventory_summaries_on_change();
+
+-- Triggers for the catalog change feed (one per event, fired once per statement)
+CREATE TRIGGER queue_catalog_changes_medicines_insert AFTER INSERT ON medicines
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION queue_medicine_changes();
+
+CREATE TRIGGER queue_catalog_changes_medicines_update AFTER UPDATE ON medicines
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION queue_medicine_changes();
+
+CREATE TRIGGER queue_catalog_changes_medicines_delete AFTER DELETE ON medicines
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION queue_medicine_changes();
+
+CREATE TRIGGER queue_catalog_changes_medicine_inventory_insert AFTER INSERT ON medicine_inventory
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION queue_inventory_changes();
+
+CREATE TRIGGER queue_catalog_changes_medicine_inventory_update AFTER UPDATE ON medicine_inventory
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION queue_inventory_changes();
+
+CREATE TRIGGER queue_catalog_changes_medicine_inventory_delete AFTER DELETE ON medicine_inventory
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION queue_inventory_changes();
+
+CREATE TRIGGER queue_catalog_changes_inventory_summary_update AFTER UPDATE ON medicine_inventory_summary
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION queue_expired_inventory_changes();
@@ -6,6 +6,7 @@ import { z } from 'zod'
 import { Link } from 'react-router-dom'
 import { useCartStore } from '@/stores/cartStore'
 import { orderService, CreateOrderRequest } from '@/services/orderApi'
+import { cartService } from '@/services/cartApi'
 import { patientService, Patient } from '@/services/patientApi'
 import { Button } from '@/components/ui/button'
 import { Card, CardContent, CardHeader, CardTitle } from '@/components/ui/card'
@@ -11,7 +11,9 @@ import { Search, Package, Pill, ShoppingCart } from 'lucide-react'
 
 export default function CatalogPage() {
   const [medicines, setMedicines] = useState<Medicine[]>([])
+  const [nextCursor, setNextCursor] = useState<string | undefined>(undefined)
   const [isLoading, setIsLoading] = useState(true)
+  const [isLoadingMore, setIsLoadingMore] = useState(false)
   const [error, setError] = useState<string | null>(null)
   const [searchQuery, setSearchQuery] = useState('')
   const [filters, setFilters] = useState<MedicineSearchParams>({})
@@ -27,8 +29,9 @@ export default function CatalogPage() {
           ...filters,
           ...(searchQuery && { search: searchQuery }),
         }
-        const data = await catalogService.getAllMedicines(params)
-        setMedicines(data)
+        const page = await catalogService.getAllMedicines(params)
+        setMedicines(page.items)
+        setNextCursor(page.hasMore ? page.nextCursor : undefined)
       } catch (err: any) {
         setError('Failed to load medicines')
         console.error(err)
@@ -40,6 +43,26 @@ export default function CatalogPage() {
     loadMedicines()
   }, [filters, searchQuery])
 
+  const handleLoadMore = async () => {
+    if (!nextCursor) return
+
+    try {
+      setIsLoadingMore(true)
+      const page = await catalogService.getAllMedicines({
+        ...filters,
+        ...(searchQuery && { search: searchQuery }),
+        cursor: nextCursor,
+      })
+      setMedicines((prev) => [...prev, ...page.items])
+      setNextCursor(page.hasMore ? page.nextCursor : undefined)
+    } catch (err: any) {
+      setError('Failed to load medicines')
+      console.error(err)
+    } finally {
+      setIsLoadingMore(false)
+    }
+  }
+
   const handleSearch = (e: React.FormEvent) => {
     e.preventDefault()
     // The useEffect will automatically trigger when searchQuery changes
@@ -287,6 +310,14 @@ export default function CatalogPage() {
           ))}
         </div>
       )}
+
+      {nextCursor && (
+        <div className="flex justify-center mt-8">
+          <Button variant="outline" disabled={isLoadingMore} onClick={handleLoadMore}>
+            {isLoadingMore ? 'Loading...' : 'Load More'}
+          </Button>
+        </div>
+      )}
     </div>
   )
 }
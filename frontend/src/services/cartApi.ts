@@ -44,6 +44,11 @@ export const cartService = {
     return response.data.data || response.data
   },
 
+  addAllToCart: async (items: AddToCartRequest[]): Promise<Cart> => {
+    const response = await cartApi.post('/cart/items/bulk', { items })
+    return response.data.data || response.data
+  },
+
   updateCartItem: async (itemId: string, request: UpdateCartItemRequest): Promise<Cart> => {
     const response = await cartApi.put(`/cart/items/${itemId}`, request)
     return response.data.data || response.data
@@ -26,22 +26,54 @@ export interface MedicineSearchParams {
   form?: string
   schedule?: string
   prescriptionRequired?: boolean
+  cursor?: string
+  limit?: number
+}
+
+export interface MedicinePage {
+  items: Medicine[]
+  nextCursor?: string
+  hasMore: boolean
+  limit: number
+}
+
+export interface MedicineBatchItem {
+  id: string
+  found: boolean
+  medicine?: Medicine
+}
+
+export interface MedicineFacets {
+  total: number
+  forms: Partial<Record<Medicine['form'], number>>
+  schedules: Partial<Record<NonNullable<Medicine['schedule']>, number>>
+  prescriptionRequired: Record<'true' | 'false', number>
 }
 
 export const catalogService = {
-  getAllMedicines: async (params?: MedicineSearchParams): Promise<Medicine[]> => {
+  getAllMedicines: async (params?: MedicineSearchParams): Promise<MedicinePage> => {
     const response = await catalogApi.get('/catalog/medicines', { params })
     return response.data.data || response.data
   },
 
+  getFacets: async (params?: Omit<MedicineSearchParams, 'cursor' | 'limit'>): Promise<MedicineFacets> => {
+    const response = await catalogApi.get('/catalog/medicines/facets', { params })
+    return response.data.data || response.data
+  },
+
   getMedicineById: async (id: string): Promise<Medicine> => {
     const response = await catalogApi.get(`/catalog/medicines/${id}`)
     return response.data.data || response.data
   },
 
-  searchMedicines: async (query: string): Promise<Medicine[]> => {
+  getMedicinesByIds: async (ids: string[]): Promise<MedicineBatchItem[]> => {
+    const response = await catalogApi.post('/catalog/medicines/batch', { ids })
+    return response.data.data || response.data
+  },
+
+  searchMedicines: async (query: string, cursor?: string): Promise<MedicinePage> => {
     const response = await catalogApi.get('/catalog/medicines/search', {
-      params: { q: query },
+      params: { q: query, cursor },
     })
     return response.data.data || response.data
   },